@@ -2,21 +2,31 @@ package com.medicare.app;
 
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView; // Keep this import
 import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.Filter;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -25,6 +35,9 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.medicare.app.adapters.TimeAdapter;
 import com.medicare.app.database.DatabaseHelper;
 import com.medicare.app.models.Medicine;
+import com.medicare.app.services.DrugNameSuggester;
+import com.medicare.app.services.InteractionChecker;
+import com.medicare.app.services.MedicineInfoPrefetchJob;
 import com.medicare.app.utils.ReminderScheduler;
 
 import java.text.SimpleDateFormat;
@@ -39,10 +52,14 @@ import java.util.Map; // Keep this import
 
 public class AddMedicineActivity extends AppCompatActivity {
 
-    private EditText etMedicineName, etDosage, etNotes, etCustomTime;
+    private static final String TAG = "AddMedicineActivity";
+
+    private AutoCompleteTextView etMedicineName;
+    private EditText etDosage, etNotes, etCustomTime;
     private Spinner spinnerFrequency, spinnerMedicineType;
     private Button btnStartDate, btnEndDate, btnAddTime, btnSave, btnCancel;
     private TextView tvStartDate, tvEndDate, tvTimeCount;
+    private CheckBox cbCritical;
     private RecyclerView recyclerTimes;
 
     private DatabaseHelper databaseHelper;
@@ -62,6 +79,12 @@ public class AddMedicineActivity extends AppCompatActivity {
     private Map<String, Integer> frequencyMaxTimes;
     private String[] frequencyValues;
 
+    // Name suggestions wait for a pause in typing so each keystroke does not start a lookup
+    private static final long SUGGESTION_DEBOUNCE_MILLIS = 150;
+    private static final int MAX_SUGGESTIONS = 8;
+    private final Handler suggestionHandler = new Handler(Looper.getMainLooper());
+    private ArrayAdapter<String> suggestionAdapter;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -127,7 +150,9 @@ public class AddMedicineActivity extends AppCompatActivity {
         tvTimeCount = findViewById(R.id.tv_time_count);
         recyclerTimes = findViewById(R.id.recycler_times);
         etCustomTime = findViewById(R.id.et_custom_time);
+        cbCritical = findViewById(R.id.cb_critical);
 
+        setupNameSuggestions();
         setupSpinners();
         setupTimesRecyclerView();
         setupAdvancedClickListeners();
@@ -137,6 +162,65 @@ public class AddMedicineActivity extends AppCompatActivity {
         databaseHelper = new DatabaseHelper(this);
     }
 
+    private void setupNameSuggestions() {
+        if (etMedicineName == null) return;
+
+        // The suggester has already matched the prefix, so the adapter shows its list unfiltered
+        suggestionAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_dropdown_item_1line, new ArrayList<>()) {
+            @Override
+            public Filter getFilter() {
+                return new Filter() {
+                    @Override
+                    protected FilterResults performFiltering(CharSequence constraint) {
+                        return new FilterResults();
+                    }
+
+                    @Override
+                    protected void publishResults(CharSequence constraint, FilterResults results) {
+                        notifyDataSetChanged();
+                    }
+                };
+            }
+        };
+        etMedicineName.setAdapter(suggestionAdapter);
+
+        etMedicineName.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                suggestionHandler.removeCallbacksAndMessages(null);
+                if (etMedicineName.isPerformingCompletion()) return;
+                suggestionAdapter.clear();
+                String prefix = s.toString().trim();
+                if (prefix.length() < etMedicineName.getThreshold()) return;
+                suggestionHandler.postDelayed(() -> requestNameSuggestions(prefix), SUGGESTION_DEBOUNCE_MILLIS);
+            }
+        });
+    }
+
+    private void requestNameSuggestions(String prefix) {
+        DrugNameSuggester.getInstance(this).suggest(prefix, MAX_SUGGESTIONS, (answered, suggestions) ->
+                runOnUiThread(() -> {
+                    // Typing moved on while the lookup ran
+                    if (isFinishing() || !answered.equals(etMedicineName.getText().toString().trim())) return;
+                    if (suggestions.isEmpty()
+                            || (suggestions.size() == 1 && suggestions.get(0).equalsIgnoreCase(answered))) {
+                        etMedicineName.dismissDropDown();
+                        return;
+                    }
+                    suggestionAdapter.clear();
+                    suggestionAdapter.addAll(suggestions);
+                    if (etMedicineName.hasFocus()) {
+                        etMedicineName.showDropDown();
+                    }
+                }));
+    }
+
     private void setupSpinners() {
         if (spinnerFrequency != null) {
             String[] frequencyDisplays = {
@@ -389,6 +473,8 @@ public class AddMedicineActivity extends AppCompatActivity {
             medicine.setNotes(etNotes.getText().toString().trim());
         }
 
+        medicine.setCritical(cbCritical != null && cbCritical.isChecked());
+
         medicine.setStartDate(startDate != null ? startDate : new Date());
         medicine.setEndDate(endDate);
         medicine.setActive(true);
@@ -405,14 +491,57 @@ public class AddMedicineActivity extends AppCompatActivity {
         long id = databaseHelper.insertMedicine(medicine, currentUserId);
         if (id > 0) {
             medicine.setId(id);
-            ReminderScheduler.scheduleReminder(this, medicine); // Assumes ReminderScheduler uses "HH:mm"
+            MedicineInfoPrefetchJob.schedule(this);
             Toast.makeText(this, "Medicine added successfully", Toast.LENGTH_SHORT).show();
-            finish();
+            scheduleAndCheckInteractions(medicine, currentUserId);
         } else {
             Toast.makeText(this, "Error adding medicine to database", Toast.LENGTH_SHORT).show();
         }
     }
 
+    // Schedules the reminders, warns about shared ingredients and label interactions with the user's other medicines, then closes
+    private void scheduleAndCheckInteractions(Medicine medicine, long userId) {
+        if (btnSave != null) btnSave.setEnabled(false);
+        Context appContext = getApplicationContext();
+        new Thread(() -> {
+            // Scheduling reads and rewrites the reminder snapshot, so it stays off the main thread too
+            try {
+                ReminderScheduler.scheduleReminder(appContext, medicine); // Assumes ReminderScheduler uses "HH:mm"
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error scheduling reminders", e);
+            }
+
+            List<InteractionChecker.Warning> warnings;
+            try {
+                List<Medicine> medicines = databaseHelper.getActiveMedicines(userId);
+                warnings = new InteractionChecker(this).check(medicine, medicines);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error checking medicine interactions", e);
+                warnings = new ArrayList<>();
+            }
+            final List<InteractionChecker.Warning> found = warnings;
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                if (found.isEmpty()) {
+                    finish();
+                    return;
+                }
+                StringBuilder message = new StringBuilder();
+                for (InteractionChecker.Warning warning : found) {
+                    if (message.length() > 0) message.append("\n\n");
+                    message.append(warning.getMessage());
+                }
+                message.append("\n\nCheck with your doctor or pharmacist.");
+                new AlertDialog.Builder(this)
+                        .setTitle("Possible Medicine Conflict")
+                        .setMessage(message.toString())
+                        .setCancelable(false)
+                        .setPositiveButton("OK", (dialog, which) -> finish())
+                        .show();
+            });
+        }, "MedicineSaved").start();
+    }
+
     private boolean validateForm() {
         if (etMedicineName == null || TextUtils.isEmpty(etMedicineName.getText().toString().trim())) {
             if (etMedicineName != null) etMedicineName.setError("Medicine name is required");
@@ -466,6 +595,7 @@ public class AddMedicineActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        suggestionHandler.removeCallbacksAndMessages(null);
         if (databaseHelper != null) {
             databaseHelper.close();
         }
@@ -1,13 +1,19 @@
 package com.medicare.app;
 
 import android.app.ProgressDialog;
+import android.app.TimePickerDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -21,9 +27,17 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.medicare.app.adapters.MedicineAdapter;
 import com.medicare.app.database.DatabaseHelper;
 import com.medicare.app.models.Medicine;
+import com.medicare.app.services.DrugNameSuggester;
+import com.medicare.app.services.LabelIndex;
 import com.medicare.app.services.MedicineInfoService;
+import com.medicare.app.utils.LatenessHistogram;
+import com.medicare.app.utils.ReminderPolicy;
 import com.medicare.app.utils.ReminderScheduler;
+import com.medicare.app.utils.ReminderSettings;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -33,6 +47,9 @@ import java.util.Locale;
 
 public class DashboardActivity extends AppCompatActivity implements MedicineAdapter.OnMedicineClickListener {
 
+    private static final int REQUEST_IMPORT_LABELS = 1001;
+    private static final long INFO_LOOKUP_DEADLINE_MILLIS = 15000;
+
     private DatabaseHelper databaseHelper;
     private MedicineInfoService medicineInfoService;
     private RecyclerView recyclerView;
@@ -102,7 +119,7 @@ public class DashboardActivity extends AppCompatActivity implements MedicineAdap
 
     private void initializeDatabase() {
         databaseHelper = new DatabaseHelper(this);
-        medicineInfoService = new MedicineInfoService();
+        medicineInfoService = MedicineInfoService.getInstance(this);
         sharedPreferences = getSharedPreferences("MediCarePrefs", MODE_PRIVATE);
     }
 
@@ -389,7 +406,9 @@ public class DashboardActivity extends AppCompatActivity implements MedicineAdap
                 .setMessage("Are you sure you want to delete " + medicine.getName() + "?")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     try {
-                        ReminderScheduler.cancelReminder(this, medicine);
+                        // Cancelling rewrites the reminder snapshot; keep that file I/O off the main thread
+                        Context appContext = getApplicationContext();
+                        new Thread(() -> ReminderScheduler.cancelReminder(appContext, medicine), "ReminderCancel").start();
                         databaseHelper.deleteMedicine(medicine.getId());
                         loadMedicines();
                         updateStats();
@@ -437,11 +456,12 @@ public class DashboardActivity extends AppCompatActivity implements MedicineAdap
         // Show loading dialog
         ProgressDialog progressDialog = new ProgressDialog(this);
         progressDialog.setMessage("Fetching medicine information...");
-        progressDialog.setCancelable(false);
+        progressDialog.setCancelable(true);
         progressDialog.show();
 
-        // Fetch medicine info from FDA API
-        medicineInfoService.getMedicineInfo(medicine.getName(), new MedicineInfoService.MedicineInfoCallback() {
+        // Fetch medicine info from FDA API; cancelled with the dialog or when this activity goes away
+        MedicineInfoService.Lookup lookup = medicineInfoService.getMedicineInfo(this, medicine.getName(),
+                INFO_LOOKUP_DEADLINE_MILLIS, new MedicineInfoService.MedicineInfoCallback() {
             @Override
             public void onSuccess(MedicineInfoService.MedicineInfo medicineInfo) {
                 runOnUiThread(() -> {
@@ -458,6 +478,7 @@ public class DashboardActivity extends AppCompatActivity implements MedicineAdap
                 });
             }
         });
+        progressDialog.setOnCancelListener(dialog -> lookup.cancel(false));
     }
 
     private void showMedicineInfoFromAPI(MedicineInfoService.MedicineInfo medicineInfo) {
@@ -567,12 +588,166 @@ public class DashboardActivity extends AppCompatActivity implements MedicineAdap
                 showLogoutDialog();
                 return true;
             }
+            if (item != null && item.getItemId() == R.id.action_reminder_settings) {
+                showReminderSettingsDialog();
+                return true;
+            }
+            if (item != null && item.getItemId() == R.id.action_reminder_timing) {
+                showReminderTimingDialog();
+                return true;
+            }
+            if (item != null && item.getItemId() == R.id.action_import_labels) {
+                // An openFDA drug-label bulk download (.json or .json.zip) saved on the device
+                Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType("*/*");
+                startActivityForResult(intent, REQUEST_IMPORT_LABELS);
+                return true;
+            }
         } catch (Exception e) {
             Toast.makeText(this, "Menu error", Toast.LENGTH_SHORT).show();
         }
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_IMPORT_LABELS && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            importLabels(data.getData());
+        }
+    }
+
+    private void importLabels(Uri uri) {
+        ProgressDialog progressDialog = new ProgressDialog(this);
+        progressDialog.setMessage("Importing drug labels...");
+        progressDialog.setCancelable(false);
+        progressDialog.show();
+
+        new Thread(() -> {
+            String message;
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in == null) {
+                    throw new IOException("Could not open " + uri);
+                }
+                LabelIndex.ImportResult result = LabelIndex.getInstance(this).importBulk(in);
+                // New index names become name suggestions
+                DrugNameSuggester.getInstance(this).invalidate();
+                message = "Imported " + result;
+            } catch (IOException | RuntimeException e) {
+                Log.e("DashboardActivity", "Error importing drug labels", e);
+                message = "Error importing drug labels: " + e.getMessage();
+            }
+            final String toast = message;
+            runOnUiThread(() -> {
+                progressDialog.dismiss();
+                Toast.makeText(DashboardActivity.this, toast, Toast.LENGTH_LONG).show();
+            });
+        }, "LabelIndexImport").start();
+    }
+
+    private void showReminderSettingsDialog() {
+        long userId = sharedPreferences.getLong("user_id", -1);
+        if (userId == -1) {
+            return;
+        }
+
+        View view = getLayoutInflater().inflate(R.layout.dialog_reminder_settings, null);
+        CheckBox cbQuietHours = view.findViewById(R.id.cb_quiet_hours);
+        Button btnQuietStart = view.findViewById(R.id.btn_quiet_start);
+        Button btnQuietEnd = view.findViewById(R.id.btn_quiet_end);
+        EditText etBatchWindow = view.findViewById(R.id.et_batch_window);
+        EditText etSnoozeMinutes = view.findViewById(R.id.et_snooze_minutes);
+
+        ReminderPolicy policy = ReminderSettings.getPolicy(this, userId);
+        // Quiet hours start out as 22:00 to 07:00 when first turned on
+        int[] quietMinutes = policy.hasQuietHours()
+                ? new int[]{policy.quietStartMinute, policy.quietEndMinute}
+                : new int[]{22 * 60, 7 * 60};
+        bindQuietTime(btnQuietStart, quietMinutes, 0);
+        bindQuietTime(btnQuietEnd, quietMinutes, 1);
+        cbQuietHours.setOnCheckedChangeListener((button, checked) -> {
+            btnQuietStart.setEnabled(checked);
+            btnQuietEnd.setEnabled(checked);
+        });
+        cbQuietHours.setChecked(policy.hasQuietHours());
+        btnQuietStart.setEnabled(policy.hasQuietHours());
+        btnQuietEnd.setEnabled(policy.hasQuietHours());
+        etBatchWindow.setText(String.valueOf(policy.batchWindowMillis / 60000));
+        etSnoozeMinutes.setText(String.valueOf(ReminderSettings.getSnoozeMinutes(this)));
+
+        new AlertDialog.Builder(this)
+                .setTitle("Reminder Settings")
+                .setView(view)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    boolean quiet = cbQuietHours.isChecked();
+                    ReminderSettings.setQuietHours(this, userId, quiet ? quietMinutes[0] : -1, quiet ? quietMinutes[1] : -1);
+                    ReminderSettings.setBatchWindowMinutes(this, userId, parseMinutes(etBatchWindow, 0));
+                    ReminderSettings.setSnoozeMinutes(this, parseMinutes(etSnoozeMinutes, ReminderSettings.DEFAULT_SNOOZE_MINUTES));
+
+                    // Quiet hours and batching decide when pending doses are delivered, so move their wakeups now
+                    ReminderPolicy updated = ReminderSettings.getPolicy(this, userId);
+                    if (updated.batchWindowMillis != policy.batchWindowMillis
+                            || updated.quietStartMinute != policy.quietStartMinute
+                            || updated.quietEndMinute != policy.quietEndMinute) {
+                        Context appContext = getApplicationContext();
+                        new Thread(() -> ReminderScheduler.rescheduleChangedTriggers(appContext), "ReminderPolicyChange").start();
+                    }
+                    Toast.makeText(this, "Reminder settings saved", Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void bindQuietTime(Button button, int[] quietMinutes, int index) {
+        button.setText(String.format(Locale.US, "%02d:%02d", quietMinutes[index] / 60, quietMinutes[index] % 60));
+        button.setOnClickListener(v -> new TimePickerDialog(this, (picker, hourOfDay, minute) -> {
+            quietMinutes[index] = hourOfDay * 60 + minute;
+            button.setText(String.format(Locale.US, "%02d:%02d", hourOfDay, minute));
+        }, quietMinutes[index] / 60, quietMinutes[index] % 60, true).show());
+    }
+
+    private static int parseMinutes(EditText editText, int fallback) {
+        try {
+            return Integer.parseInt(editText.getText().toString().trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // The histogram is read from disk, so both the summary and the export run off the main thread
+    private void showReminderTimingDialog() {
+        new Thread(() -> {
+            String summary = LatenessHistogram.formatSummaries(LatenessHistogram.getDailySummaries(this));
+            runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle("Reminder Timing")
+                        .setMessage("Delivery delay after the scheduled time, per day:\n\n" + summary)
+                        .setPositiveButton("OK", null)
+                        .setNegativeButton("Export", (dialog, which) -> exportReminderTiming())
+                        .show();
+            });
+        }, "ReminderTimingLoad").start();
+    }
+
+    private void exportReminderTiming() {
+        new Thread(() -> {
+            String message;
+            try {
+                File file = LatenessHistogram.exportCsv(this);
+                message = "Exported to " + file.getAbsolutePath();
+            } catch (IOException e) {
+                Log.e("DashboardActivity", "Error exporting reminder timing", e);
+                message = "Error exporting reminder timing";
+            }
+            final String toast = message;
+            runOnUiThread(() -> Toast.makeText(DashboardActivity.this, toast, Toast.LENGTH_LONG).show());
+        }, "ReminderTimingExport").start();
+    }
+
     private void showLogoutDialog() {
         new AlertDialog.Builder(this)
                 .setTitle("Logout")
@@ -14,6 +14,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import android.widget.EditText;
 import com.medicare.app.database.DatabaseHelper;
 import com.medicare.app.models.User;
+import com.medicare.app.services.MedicineInfoPrefetchJob;
 
 public class LoginActivity extends AppCompatActivity {
 
@@ -123,6 +124,7 @@ public class LoginActivity extends AppCompatActivity {
                                 editor.apply();
                                 
                                 Log.d(TAG, "User session saved: user_id=" + user.getId() + ", email=" + user.getEmail());
+                                MedicineInfoPrefetchJob.schedule(LoginActivity.this);
 
                                 Toast.makeText(LoginActivity.this, "Welcome back, " + user.getFullName() + "!", Toast.LENGTH_SHORT).show();
                                 
@@ -0,0 +1,32 @@
+package com.medicare.app;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
+import com.medicare.app.utils.ReminderNotifier;
+
+/**
+ * Keeps process start cheap. Alarms, boot and notification actions start the process through a
+ * broadcast receiver, so onCreate only does what every process needs before it can post: the
+ * notification channels, one binder call each.
+ */
+public class MediCareApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            // Flags main-thread disk and network access in debug builds
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyLog()
+                    .build());
+        }
+        // Registered up front, so posting never checks for them and they exist before the user
+        // can open the app's notification settings
+        ReminderNotifier.createChannels(this);
+    }
+}
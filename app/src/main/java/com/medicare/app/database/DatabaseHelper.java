@@ -24,11 +24,12 @@ import java.util.Locale;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "medicare.db";
-    private static final int DATABASE_VERSION = 5;
+    private static final int DATABASE_VERSION = 8;
     private static final String TAG = "DatabaseHelper";
     
     private static final String TABLE_MEDICINES = "medicines";
     private static final String TABLE_USERS = "users";
+    private static final String TABLE_DOSE_LOG = "dose_log";
     private static final String COLUMN_ID = "id";
     private static final String COLUMN_NAME = "name";
     private static final String COLUMN_DOSAGE = "dosage";
@@ -39,6 +40,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_START_DATE = "start_date";
     private static final String COLUMN_END_DATE = "end_date";
     private static final String COLUMN_IS_ACTIVE = "is_active";
+    private static final String COLUMN_IS_CRITICAL = "is_critical";
     private static final String COLUMN_CREATED_AT = "created_at";
     private static final String COLUMN_UPDATED_AT = "updated_at";
     private static final String COLUMN_USER_ID = "user_id";
@@ -49,6 +51,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_FIRST_NAME = "first_name";
     private static final String COLUMN_LAST_NAME = "last_name";
 
+    // Dose log table columns
+    private static final String COLUMN_MEDICINE_ID = "medicine_id";
+    private static final String COLUMN_TIME_INDEX = "time_index";
+    private static final String COLUMN_SCHEDULED_AT = "scheduled_at";
+    private static final String COLUMN_OUTCOME = "outcome";
+
+    public static final String OUTCOME_TAKEN = "taken";
+    public static final String OUTCOME_SKIPPED = "skipped";
+    public static final String OUTCOME_SNOOZED = "snoozed";
+    public static final String OUTCOME_MISSED = "missed";
+
     private static final String CREATE_TABLE_MEDICINES = "CREATE TABLE " + TABLE_MEDICINES + "("
             + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
             + COLUMN_NAME + " TEXT NOT NULL,"
@@ -60,11 +73,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + COLUMN_START_DATE + " TEXT,"
             + COLUMN_END_DATE + " TEXT,"
             + COLUMN_IS_ACTIVE + " INTEGER DEFAULT 1,"
+            + COLUMN_IS_CRITICAL + " INTEGER DEFAULT 0,"
             + COLUMN_CREATED_AT + " TEXT,"
             + COLUMN_UPDATED_AT + " TEXT,"
             + COLUMN_USER_ID + " INTEGER NOT NULL"
             + ")";
 
+    // Lets the daily course-completion sweep find finished medicines without scanning the table
+    private static final String CREATE_INDEX_MEDICINES_END_DATE = "CREATE INDEX IF NOT EXISTS idx_medicines_active_end_date ON "
+            + TABLE_MEDICINES + "(" + COLUMN_IS_ACTIVE + ", " + COLUMN_END_DATE + ")";
+
     private static final String CREATE_TABLE_USERS = "CREATE TABLE " + TABLE_USERS + "("
             + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
             + COLUMN_EMAIL + " TEXT UNIQUE NOT NULL,"
@@ -75,6 +93,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + COLUMN_UPDATED_AT + " TEXT"
             + ")";
 
+    private static final String CREATE_TABLE_DOSE_LOG = "CREATE TABLE IF NOT EXISTS " + TABLE_DOSE_LOG + "("
+            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_MEDICINE_ID + " INTEGER NOT NULL,"
+            + COLUMN_USER_ID + " INTEGER NOT NULL,"
+            + COLUMN_TIME_INDEX + " INTEGER NOT NULL,"
+            + COLUMN_SCHEDULED_AT + " INTEGER,"
+            + COLUMN_OUTCOME + " TEXT NOT NULL,"
+            + COLUMN_CREATED_AT + " TEXT"
+            + ")";
+
     private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
     private Gson gson = new Gson();
     private Type listType = new TypeToken<List<String>>(){}.getType();
@@ -86,7 +114,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE_MEDICINES);
+        db.execSQL(CREATE_INDEX_MEDICINES_END_DATE);
         db.execSQL(CREATE_TABLE_USERS);
+        db.execSQL(CREATE_TABLE_DOSE_LOG);
         
         // No sample data - each user starts with empty medicine list
     }
@@ -110,6 +140,15 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             db.execSQL("DELETE FROM " + TABLE_MEDICINES);
             Log.d(TAG, "Database version 5: Forced complete medicine data reset for user isolation");
         }
+        if (oldVersion < 6) {
+            db.execSQL(CREATE_INDEX_MEDICINES_END_DATE);
+        }
+        if (oldVersion < 7) {
+            db.execSQL(CREATE_TABLE_DOSE_LOG);
+        }
+        if (oldVersion < 8) {
+            db.execSQL("ALTER TABLE " + TABLE_MEDICINES + " ADD COLUMN " + COLUMN_IS_CRITICAL + " INTEGER DEFAULT 0");
+        }
     }
 
     public long insertMedicine(Medicine medicine, long userId) {
@@ -126,12 +165,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_START_DATE, dateFormat.format(medicine.getStartDate()));
         values.put(COLUMN_END_DATE, medicine.getEndDate() != null ? dateFormat.format(medicine.getEndDate()) : null);
         values.put(COLUMN_IS_ACTIVE, medicine.isActive() ? 1 : 0);
+        values.put(COLUMN_IS_CRITICAL, medicine.isCritical() ? 1 : 0);
         values.put(COLUMN_CREATED_AT, dateFormat.format(new Date()));
         values.put(COLUMN_UPDATED_AT, dateFormat.format(new Date()));
         values.put(COLUMN_USER_ID, userId);
         
         long id = db.insert(TABLE_MEDICINES, null, values);
         Log.d(TAG, "Medicine inserted with ID: " + id + " for user_id: " + userId);
+        medicine.setUserId(userId);
         db.close();
         return id;
     }
@@ -189,6 +230,68 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return medicines;
     }
 
+    // Active medicines of every user on the device, used to rebuild the boot-time reminder snapshot
+    public List<Medicine> getActiveMedicinesForAllUsers() {
+        List<Medicine> medicines = new ArrayList<>();
+        String selectQuery = "SELECT * FROM " + TABLE_MEDICINES + " WHERE " + COLUMN_IS_ACTIVE + " = 1";
+        
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(selectQuery, null);
+        
+        if (cursor.moveToFirst()) {
+            do {
+                medicines.add(cursorToMedicine(cursor));
+            } while (cursor.moveToNext());
+        }
+        
+        Log.d(TAG, "Total active medicines across all users: " + medicines.size());
+        cursor.close();
+        db.close();
+        return medicines;
+    }
+
+    // Active medicines whose end date falls before the given instant; served by the end-date index
+    public List<Medicine> getActiveMedicinesEndingBefore(Date cutoff) {
+        List<Medicine> medicines = new ArrayList<>();
+        String selectQuery = "SELECT * FROM " + TABLE_MEDICINES + " WHERE " + COLUMN_IS_ACTIVE + " = 1 AND "
+                + COLUMN_END_DATE + " IS NOT NULL AND " + COLUMN_END_DATE + " < ?";
+        
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(selectQuery, new String[]{dateFormat.format(cutoff)});
+        
+        if (cursor.moveToFirst()) {
+            do {
+                medicines.add(cursorToMedicine(cursor));
+            } while (cursor.moveToNext());
+        }
+        
+        cursor.close();
+        db.close();
+        return medicines;
+    }
+
+    public int deactivateMedicines(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        
+        StringBuilder placeholders = new StringBuilder();
+        String[] args = new String[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+            args[i] = String.valueOf(ids.get(i));
+        }
+        
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_IS_ACTIVE, 0);
+        values.put(COLUMN_UPDATED_AT, dateFormat.format(new Date()));
+        int rowsAffected = db.update(TABLE_MEDICINES, values, COLUMN_ID + " IN (" + placeholders + ")", args);
+        db.close();
+        Log.d(TAG, "Deactivated " + rowsAffected + " completed medicines");
+        return rowsAffected;
+    }
+
     public Medicine getMedicine(long id) {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.query(TABLE_MEDICINES, null, COLUMN_ID + "=?", new String[]{String.valueOf(id)}, null, null, null);
@@ -216,6 +319,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_START_DATE, dateFormat.format(medicine.getStartDate()));
         values.put(COLUMN_END_DATE, medicine.getEndDate() != null ? dateFormat.format(medicine.getEndDate()) : null);
         values.put(COLUMN_IS_ACTIVE, medicine.isActive() ? 1 : 0);
+        values.put(COLUMN_IS_CRITICAL, medicine.isCritical() ? 1 : 0);
         values.put(COLUMN_UPDATED_AT, dateFormat.format(new Date()));
         
         int rowsAffected = db.update(TABLE_MEDICINES, values, COLUMN_ID + "=?", new String[]{String.valueOf(medicine.getId())});
@@ -232,6 +336,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private Medicine cursorToMedicine(Cursor cursor) {
         Medicine medicine = new Medicine();
         medicine.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
+        medicine.setUserId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_USER_ID)));
         medicine.setName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)));
         medicine.setDosage(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DOSAGE)));
         medicine.setFrequency(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FREQUENCY)));
@@ -245,6 +350,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         medicine.setMedicineType(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MEDICINE_TYPE)));
         medicine.setNotes(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NOTES)));
         medicine.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_IS_ACTIVE)) == 1);
+        medicine.setCritical(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_IS_CRITICAL)) == 1);
         
         try {
             String startDateStr = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_START_DATE));
@@ -284,6 +390,23 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return count;
     }
 
+    // Records what the user did with a reminded dose (taken, skipped, snoozed)
+    public long insertDoseOutcome(long medicineId, long userId, int timeIndex, long scheduledAt, String outcome) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        
+        values.put(COLUMN_MEDICINE_ID, medicineId);
+        values.put(COLUMN_USER_ID, userId);
+        values.put(COLUMN_TIME_INDEX, timeIndex);
+        values.put(COLUMN_SCHEDULED_AT, scheduledAt);
+        values.put(COLUMN_OUTCOME, outcome);
+        values.put(COLUMN_CREATED_AT, dateFormat.format(new Date()));
+        
+        long id = db.insert(TABLE_DOSE_LOG, null, values);
+        db.close();
+        return id;
+    }
+
     // User management methods
     public long insertUser(User user) {
         SQLiteDatabase db = this.getWritableDatabase();
@@ -5,6 +5,7 @@ import java.util.List;
 
 public class Medicine {
     private long id;
+    private long userId;
     private String name;
     private String dosage;
     private String frequency;
@@ -14,6 +15,8 @@ public class Medicine {
     private Date startDate;
     private Date endDate;
     private boolean isActive;
+    // Critical doses are never held back by quiet hours
+    private boolean critical;
     private Date createdAt;
     private Date updatedAt;
 
@@ -40,6 +43,9 @@ public class Medicine {
     public long getId() { return id; }
     public void setId(long id) { this.id = id; }
 
+    public long getUserId() { return userId; }
+    public void setUserId(long userId) { this.userId = userId; }
+
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
 
@@ -67,6 +73,9 @@ public class Medicine {
     public boolean isActive() { return isActive; }
     public void setActive(boolean active) { isActive = active; }
 
+    public boolean isCritical() { return critical; }
+    public void setCritical(boolean critical) { this.critical = critical; }
+
     public Date getCreatedAt() { return createdAt; }
     public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
 
@@ -1,20 +1,55 @@
 package com.medicare.app.receivers;
 
+import android.app.AlarmManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
 
+import com.medicare.app.utils.ReceiverTrace;
 import com.medicare.app.utils.ReminderScheduler;
 
 public class BootReceiver extends BroadcastReceiver {
-    
+
+    private static final String TAG = "BootReceiver";
+    private static final String STATS_PREFS_NAME = "MediCareReminderStats";
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
-            // TODO: Reschedule all medicine reminders after device boot
-            // This requires knowing which user is currently logged in
-            // For now, reminders will be rescheduled when user opens the app
-            // ReminderScheduler.rescheduleAllReminders(context, userId);
+        // Exact-alarm permission changes re-arm everything so reminders switch between exact
+        // alarms and the shared inexact window
+        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())
+                || AlarmManager.ACTION_SCHEDULE_EXACT_ALARM_PERMISSION_STATE_CHANGED.equals(intent.getAction())) {
+            // Restore every user's reminders from the schedule snapshot, off the main thread
+            long traceStart = ReceiverTrace.begin("BootReceiver.onReceive");
+            final Context appContext = context.getApplicationContext();
+            final PendingResult pendingResult = goAsync();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long start = SystemClock.elapsedRealtime();
+                    long restoreStart = ReceiverTrace.begin("BootReceiver.restore");
+                    try {
+                        int restored = ReminderScheduler.restoreAllReminders(appContext);
+                        long elapsed = SystemClock.elapsedRealtime() - start;
+                        Log.d(TAG, "Restored " + restored + " reminders after boot in " + elapsed + " ms");
+
+                        SharedPreferences stats = appContext.getSharedPreferences(STATS_PREFS_NAME, Context.MODE_PRIVATE);
+                        stats.edit()
+                                .putLong("last_boot_restore_ms", elapsed)
+                                .putInt("last_boot_restore_count", restored)
+                                .apply();
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error restoring reminders after boot", e);
+                    } finally {
+                        ReceiverTrace.end("BootReceiver.restore", restoreStart, ReceiverTrace.ASYNC_BUDGET_MILLIS);
+                        pendingResult.finish();
+                    }
+                }
+            }, "BootReminderRestore").start();
+            ReceiverTrace.end("BootReceiver.onReceive", traceStart, ReceiverTrace.ON_RECEIVE_BUDGET_MILLIS);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package com.medicare.app.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.medicare.app.utils.ReceiverTrace;
+import com.medicare.app.utils.ReminderScheduler;
+
+public class CourseCompletionReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "CourseCompletionReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        long traceStart = ReceiverTrace.begin("CourseCompletionReceiver.onReceive");
+        final Context appContext = context.getApplicationContext();
+        final PendingResult pendingResult = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long workStart = ReceiverTrace.begin("CourseCompletionReceiver.sweep");
+                try {
+                    ReminderScheduler.completeFinishedCourses(appContext);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error completing finished medicine courses", e);
+                } finally {
+                    ReceiverTrace.end("CourseCompletionReceiver.sweep", workStart, ReceiverTrace.ASYNC_BUDGET_MILLIS);
+                    pendingResult.finish();
+                }
+            }
+        }, "CourseCompletionSweep").start();
+        ReceiverTrace.end("CourseCompletionReceiver.onReceive", traceStart, ReceiverTrace.ON_RECEIVE_BUDGET_MILLIS);
+    }
+}
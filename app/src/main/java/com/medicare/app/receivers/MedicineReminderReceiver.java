@@ -1,86 +1,68 @@
 package com.medicare.app.receivers;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Build;
 import android.util.Log;
 
-import androidx.core.app.NotificationCompat;
+import com.medicare.app.utils.EscalationManager;
+import com.medicare.app.utils.LatenessHistogram;
+import com.medicare.app.utils.ReceiverTrace;
+import com.medicare.app.utils.ReminderNotifier;
+import com.medicare.app.utils.ReminderScheduler;
+import com.medicare.app.utils.ReminderSnapshot;
+import com.medicare.app.utils.SnoozeManager;
 
-import com.medicare.app.DashboardActivity;
-import com.medicare.app.R;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MedicineReminderReceiver extends BroadcastReceiver {
     
-    private static final String CHANNEL_ID = "MEDICINE_REMINDERS";
-    private static final int NOTIFICATION_ID = 1001;
+    // Shared wakeup window and periodic catch-up used when exact alarms are unavailable
+    public static final String ACTION_DELIVER_DUE = "com.medicare.app.action.DELIVER_DUE_REMINDERS";
+    public static final String ACTION_CATCH_UP = "com.medicare.app.action.CATCH_UP_REMINDERS";
+    public static final String ACTION_SNOOZED = "com.medicare.app.action.SNOOZED_REMINDER";
+    public static final String ACTION_ESCALATE = "com.medicare.app.action.ESCALATE_REMINDERS";
     
     @Override
     public void onReceive(Context context, Intent intent) {
-        Log.d("MedicineReminder", "Reminder received!");
+        long traceStart = ReceiverTrace.begin("MedicineReminderReceiver.onReceive");
+        final Context appContext = context.getApplicationContext();
+        final PendingResult pendingResult = goAsync();
         
-        String medicineName = intent.getStringExtra("medicine_name");
-        String dosage = intent.getStringExtra("dosage");
-        String time = intent.getStringExtra("time");
-        
-        Log.d("MedicineReminder", "Medicine: " + medicineName + ", Dosage: " + dosage + ", Time: " + time);
-        
-        if (medicineName != null) {
-            showNotification(context, medicineName, dosage, time);
-        } else {
-            Log.e("MedicineReminder", "Medicine name is null - cannot show notification");
+        final String action = intent.getAction();
+        final long deliveredAt = ReminderScheduler.getClock().currentTimeMillis();
+        // A dose alarm carries its leading dose; it is only used when there is no schedule to collect from
+        final ReminderSnapshot.Entry fired = action == null ? ReminderNotifier.getDoseExtras(intent) : null;
+        if (fired != null) {
+            Log.d("MedicineReminder", "Reminder received for " + fired.medicineName + " at " + fired.getTime());
         }
-    }
-    
-    private void showNotification(Context context, String medicineName, String dosage, String time) {
-        createNotificationChannel(context);
         
-        Intent intent = new Intent(context, DashboardActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-        
-        String title = "Medicine Reminder";
-        String message = "Time to take " + medicineName;
-        if (dosage != null) {
-            message += " (" + dosage + ")";
-        }
-        if (time != null) {
-            message += " at " + time;
-        }
-        
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_notification)
-                .setContentTitle(title)
-                .setContentText(message)
-                .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setContentIntent(pendingIntent)
-                .setAutoCancel(true)
-                .setVibrate(new long[]{1000, 1000, 1000, 1000, 1000})
-                .setSound(android.provider.Settings.System.DEFAULT_NOTIFICATION_URI);
-        
-        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(NOTIFICATION_ID, builder.build());
-        
-        Log.d("MedicineReminder", "Notification shown for: " + medicineName);
-    }
-    
-    private void createNotificationChannel(Context context) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            CharSequence name = "Medicine Reminders";
-            String description = "Notifications for medicine reminders";
-            int importance = NotificationManager.IMPORTANCE_HIGH;
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, name, importance);
-            channel.setDescription(description);
-            channel.enableVibration(true);
-            channel.setVibrationPattern(new long[]{1000, 1000, 1000, 1000, 1000});
-            
-            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
-        }
+        ReminderNotifier.runInBackground(() -> {
+            long deliverStart = ReceiverTrace.begin("MedicineReminderReceiver.deliver");
+            List<ReminderSnapshot.Entry> due = new ArrayList<>();
+            try {
+                // The snooze and escalation alarms leave regular reminders to their own alarms. Any other
+                // wakeup delivers every dose batched into it.
+                if (!ACTION_SNOOZED.equals(action) && !ACTION_ESCALATE.equals(action)) {
+                    due.addAll(ReminderScheduler.collectDueReminders(appContext));
+                }
+                if (due.isEmpty() && fired != null && fired.medicineName != null) {
+                    fired.deliverAt = fired.nextTriggerAt;
+                    due.add(fired);
+                }
+                // Snoozed doses share this wakeup instead of waiting for their own alarm
+                due.addAll(SnoozeManager.collectDue(appContext));
+                Log.d("MedicineReminder", (action != null ? action : "Reminder alarm") + ": delivering " + due.size() + " due reminders");
+                LatenessHistogram.record(appContext, due, deliveredAt);
+                EscalationManager.track(appContext, due, deliveredAt);
+                EscalationManager.escalateDue(appContext);
+            } catch (Exception e) {
+                Log.e("MedicineReminder", "Error collecting due reminders", e);
+            }
+            ReminderNotifier.notifyReminders(appContext, due, pendingResult);
+            ReceiverTrace.end("MedicineReminderReceiver.deliver", deliverStart, ReceiverTrace.ASYNC_BUDGET_MILLIS);
+        });
+        ReceiverTrace.end("MedicineReminderReceiver.onReceive", traceStart, ReceiverTrace.ON_RECEIVE_BUDGET_MILLIS);
     }
-}
\ No newline at end of file
+}
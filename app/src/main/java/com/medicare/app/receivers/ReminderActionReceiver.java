@@ -0,0 +1,75 @@
+package com.medicare.app.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.medicare.app.database.DatabaseHelper;
+import com.medicare.app.utils.EscalationManager;
+import com.medicare.app.utils.ReceiverTrace;
+import com.medicare.app.utils.ReminderNotifier;
+import com.medicare.app.utils.ReminderSettings;
+import com.medicare.app.utils.ReminderSnapshot;
+import com.medicare.app.utils.SnoozeManager;
+
+/**
+ * Handles the Taken / Snooze / Skip buttons on a dose notification without opening the app.
+ */
+public class ReminderActionReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "ReminderAction";
+
+    public static final String ACTION_TAKEN = "com.medicare.app.action.DOSE_TAKEN";
+    public static final String ACTION_SNOOZE = "com.medicare.app.action.DOSE_SNOOZE";
+    public static final String ACTION_SKIP = "com.medicare.app.action.DOSE_SKIP";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final String outcome = getOutcome(intent.getAction());
+        if (outcome == null) {
+            return;
+        }
+
+        long traceStart = ReceiverTrace.begin("ReminderActionReceiver.onReceive");
+        final Context appContext = context.getApplicationContext();
+        final ReminderSnapshot.Entry entry = ReminderNotifier.getDoseExtras(intent);
+        final PendingResult pendingResult = goAsync();
+
+        ReminderNotifier.runInBackground(() -> {
+            long workStart = ReceiverTrace.begin("ReminderActionReceiver." + outcome);
+            try {
+                EscalationManager.acknowledge(appContext, entry.medicineId, entry.timeIndex);
+                if (DatabaseHelper.OUTCOME_SNOOZED.equals(outcome)) {
+                    long until = SnoozeManager.snooze(appContext, entry, ReminderSettings.getSnoozeMinutes(appContext) * 60000L);
+                    ReminderNotifier.showSnoozed(appContext, entry, until);
+                } else {
+                    SnoozeManager.cancel(appContext, entry.medicineId, entry.timeIndex);
+                    ReminderNotifier.dismissDose(appContext, entry);
+                }
+
+                DatabaseHelper databaseHelper = new DatabaseHelper(appContext);
+                databaseHelper.insertDoseOutcome(entry.medicineId, entry.userId, entry.timeIndex, entry.nextTriggerAt, outcome);
+                databaseHelper.close();
+                Log.d(TAG, entry.medicineName + " marked " + outcome);
+            } catch (Exception e) {
+                Log.e(TAG, "Error handling reminder action", e);
+            } finally {
+                ReceiverTrace.end("ReminderActionReceiver." + outcome, workStart, ReceiverTrace.ASYNC_BUDGET_MILLIS);
+                pendingResult.finish();
+            }
+        });
+        ReceiverTrace.end("ReminderActionReceiver.onReceive", traceStart, ReceiverTrace.ON_RECEIVE_BUDGET_MILLIS);
+    }
+
+    private static String getOutcome(String action) {
+        if (ACTION_TAKEN.equals(action)) {
+            return DatabaseHelper.OUTCOME_TAKEN;
+        } else if (ACTION_SNOOZE.equals(action)) {
+            return DatabaseHelper.OUTCOME_SNOOZED;
+        } else if (ACTION_SKIP.equals(action)) {
+            return DatabaseHelper.OUTCOME_SKIPPED;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.medicare.app.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.medicare.app.utils.ReceiverTrace;
+import com.medicare.app.utils.ReminderScheduler;
+
+public class TimeChangeReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "TimeChangeReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        // DATE_CHANGED is not delivered to manifest receivers on API 26+, and triggers are absolute
+        // instants that a plain change of date does not move
+        if (!Intent.ACTION_TIME_CHANGED.equals(action) && !Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            return;
+        }
+
+        Log.d(TAG, "Clock change received: " + action);
+        long traceStart = ReceiverTrace.begin("TimeChangeReceiver.onReceive");
+        final Context appContext = context.getApplicationContext();
+        final PendingResult pendingResult = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long workStart = ReceiverTrace.begin("TimeChangeReceiver.reschedule");
+                try {
+                    ReminderScheduler.rescheduleChangedTriggers(appContext);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error rescheduling reminders after clock change", e);
+                } finally {
+                    ReceiverTrace.end("TimeChangeReceiver.reschedule", workStart, ReceiverTrace.ASYNC_BUDGET_MILLIS);
+                    pendingResult.finish();
+                }
+            }
+        }, "TimeChangeReschedule").start();
+        ReceiverTrace.end("TimeChangeReceiver.onReceive", traceStart, ReceiverTrace.ON_RECEIVE_BUDGET_MILLIS);
+    }
+}
@@ -0,0 +1,106 @@
+package com.medicare.app.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Medicine-name type-ahead over the names bundled in assets plus those of an imported label
+ * index. The trie is built on the suggester's own thread the first time a prefix is looked up,
+ * holds at most about MAX_TRIE_BYTES of heap, and every lookup runs on that thread too.
+ */
+public class DrugNameSuggester {
+    
+    private static final String TAG = "DrugNameSuggester";
+    private static final String ASSET_NAME = "drug_names.txt";
+    // Room for about 20000 names averaging 22 characters (3.4 MB); names past it are left out of suggestions
+    private static final long MAX_TRIE_BYTES = 4 * 1024 * 1024;
+    private static final long IDLE_THREAD_SECONDS = 60;
+    
+    private static volatile DrugNameSuggester instance;
+    
+    private final Context appContext;
+    private final ThreadPoolExecutor executor;
+    // Only touched on the executor thread
+    private DrugNameTrie trie;
+    
+    public interface SuggestionCallback {
+        // Called on a background thread with the prefix it answers, so stale answers can be dropped
+        void onSuggestions(String prefix, List<String> suggestions);
+    }
+    
+    public static DrugNameSuggester getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DrugNameSuggester.class) {
+                if (instance == null) {
+                    instance = new DrugNameSuggester(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+    
+    private DrugNameSuggester(Context appContext) {
+        this.appContext = appContext;
+        this.executor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+    
+    public void suggest(String prefix, int limit, SuggestionCallback callback) {
+        executor.execute(() -> {
+            if (trie == null) {
+                trie = load();
+            }
+            callback.onSuggestions(prefix, trie.suggest(prefix, limit));
+        });
+    }
+    
+    // Rebuilds on the next lookup, for after a label index import
+    public void invalidate() {
+        executor.execute(() -> trie = null);
+    }
+    
+    private DrugNameTrie load() {
+        long start = System.nanoTime();
+        DrugNameTrie names = new DrugNameTrie(MAX_TRIE_BYTES);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(appContext.getAssets().open(ASSET_NAME), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                names.add(line);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading bundled drug names", e);
+        }
+        
+        // Index names are stored normalized; the bundled spelling wins for names in both
+        for (String name : LabelIndex.getInstance(appContext).getNames()) {
+            if (!name.isEmpty() && !names.add(toDisplayName(name))) {
+                Log.w(TAG, "Drug name memory limit reached, remaining index names skipped");
+                break;
+            }
+        }
+        Log.d(TAG, "Loaded " + names.size() + " drug names (about " + names.getEstimatedBytes() / 1024 + " KB) in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        return names;
+    }
+    
+    private static String toDisplayName(String normalized) {
+        StringBuilder display = new StringBuilder(normalized.length());
+        boolean wordStart = true;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            display.append(wordStart ? Character.toUpperCase(c) : c);
+            wordStart = c == ' ' || c == '-' || c == '/';
+        }
+        return display.toString();
+    }
+}
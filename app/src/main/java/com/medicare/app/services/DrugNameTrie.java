@@ -0,0 +1,188 @@
+package com.medicare.app.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Radix trie of drug names for type-ahead. Edges carry whole runs of characters, so a name
+ * list costs about one node per name rather than one per letter. Keys are matched lowercase;
+ * each stored name keeps the spelling it was added with. Size is capped by an estimate of the
+ * heap the trie holds (nodes, strings, child lists), not by name count, so a list of unusually
+ * long or unusually many short names stops at the same footprint. Not thread-safe for writes;
+ * build it once and then share it read-only.
+ */
+public class DrugNameTrie {
+    
+    private static class Node {
+        String edge;
+        // Display spelling when a name ends here
+        String name;
+        // Kept sorted by first edge character, so suggestions come out alphabetically
+        List<Node> children;
+        
+        Node(String edge) {
+            this.edge = edge;
+        }
+    }
+    
+    // Heap estimates for a 64-bit runtime with compressed references, UTF-16 strings
+    private static final int NODE_BYTES = 24;
+    private static final int STRING_BYTES = 24 + 16;
+    // ArrayList plus its backing array, and what each element adds as it grows
+    private static final int LIST_BYTES = 24 + 16;
+    private static final int LIST_SLOT_BYTES = 8;
+    
+    private final Node root = new Node("");
+    private final long maxBytes;
+    private long estimatedBytes = NODE_BYTES;
+    private int size;
+    
+    public DrugNameTrie(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+    
+    // Returns false for an empty name or one that could take the trie past its cap; duplicates are ignored
+    public boolean add(String name) {
+        String key = name == null ? "" : name.trim().toLowerCase(Locale.US);
+        // At most a split node and a leaf, their child lists, two edges and the name
+        long worstCase = 2 * (NODE_BYTES + LIST_BYTES + LIST_SLOT_BYTES) + 3 * stringBytes(key.length());
+        if (key.isEmpty() || estimatedBytes + worstCase > maxBytes) {
+            return false;
+        }
+        
+        Node node = root;
+        int offset = 0;
+        while (true) {
+            if (offset == key.length()) {
+                if (node.name == null) {
+                    node.name = name.trim();
+                    estimatedBytes += stringBytes(key.length());
+                    size++;
+                }
+                return true;
+            }
+            
+            char next = key.charAt(offset);
+            int index = findChild(node, next);
+            if (index < 0) {
+                Node leaf = new Node(key.substring(offset));
+                leaf.name = name.trim();
+                insertChild(node, -index - 1, leaf);
+                estimatedBytes += NODE_BYTES + stringBytes(leaf.edge.length()) + stringBytes(key.length());
+                size++;
+                return true;
+            }
+            
+            Node child = node.children.get(index);
+            int common = commonPrefix(child.edge, key, offset);
+            if (common < child.edge.length()) {
+                // The key leaves this edge part way along; split it at the divergence point
+                Node split = new Node(child.edge.substring(0, common));
+                child.edge = child.edge.substring(common);
+                split.children = new ArrayList<>(2);
+                split.children.add(child);
+                node.children.set(index, split);
+                // The edge's characters are shared out between the two; only the headers are new
+                estimatedBytes += NODE_BYTES + STRING_BYTES + LIST_BYTES + LIST_SLOT_BYTES;
+                child = split;
+            }
+            node = child;
+            offset += common;
+        }
+    }
+    
+    // Up to limit names starting with prefix (case-insensitive), in alphabetical order
+    public List<String> suggest(String prefix, int limit) {
+        List<String> results = new ArrayList<>();
+        String key = prefix == null ? "" : prefix.trim().toLowerCase(Locale.US);
+        if (key.isEmpty() || limit <= 0) {
+            return results;
+        }
+        
+        Node node = root;
+        int offset = 0;
+        while (offset < key.length()) {
+            int index = findChild(node, key.charAt(offset));
+            if (index < 0) {
+                return results;
+            }
+            Node child = node.children.get(index);
+            int common = commonPrefix(child.edge, key, offset);
+            // Either the prefix ends inside this edge, or the two disagree and nothing matches
+            if (common < child.edge.length() && offset + common < key.length()) {
+                return results;
+            }
+            node = child;
+            offset += common;
+        }
+        collect(node, results, limit);
+        return results;
+    }
+    
+    private static void collect(Node node, List<String> results, int limit) {
+        if (node.name != null && results.size() < limit) {
+            results.add(node.name);
+        }
+        if (node.children == null) {
+            return;
+        }
+        for (Node child : node.children) {
+            if (results.size() >= limit) {
+                return;
+            }
+            collect(child, results, limit);
+        }
+    }
+    
+    private static long stringBytes(int length) {
+        return STRING_BYTES + 2L * length;
+    }
+    
+    private static int commonPrefix(String edge, String key, int offset) {
+        int max = Math.min(edge.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && edge.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+    
+    // Binary search on first characters; returns -(insertion point) - 1 when absent
+    private static int findChild(Node node, char first) {
+        if (node.children == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = node.children.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children.get(mid).edge.charAt(0);
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    private void insertChild(Node node, int position, Node child) {
+        if (node.children == null) {
+            node.children = new ArrayList<>(2);
+            estimatedBytes += LIST_BYTES;
+        }
+        estimatedBytes += LIST_SLOT_BYTES;
+        node.children.add(position, child);
+    }
+}
@@ -0,0 +1,151 @@
+package com.medicare.app.services;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Cuts every JSON string value in a stream to at most maxLength characters while it is read, so
+ * the JsonReader on top never buffers more of a field than will be kept. Object keys pass
+ * through whole. An escape sequence counts as the one character it stands for and is kept or
+ * dropped whole, and the closing quote always goes through, so the output stays valid JSON.
+ */
+class FieldCapReader extends FilterReader {
+    
+    private final int maxLength;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    
+    // Whether each enclosing container is an object, innermost at depth - 1
+    private boolean[] objects = new boolean[16];
+    private int depth;
+    private boolean expectingName;
+    
+    private boolean inString;
+    private boolean capping;
+    // Characters of the current string kept so far
+    private int length;
+    // -1 right after a backslash, then the hex digits left in a unicode escape
+    private int escapeLeft;
+    private boolean droppingEscape;
+    
+    FieldCapReader(Reader in, int maxLength) {
+        super(in);
+        this.maxLength = maxLength;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        char[] one = new char[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0];
+    }
+    
+    @Override
+    public int read(char[] out, int offset, int count) throws IOException {
+        int written = 0;
+        while (written < count) {
+            if (position == limit) {
+                // Hand over what is ready rather than block for more
+                if (written > 0) {
+                    break;
+                }
+                int read = in.read(buffer, 0, buffer.length);
+                if (read < 0) {
+                    return -1;
+                }
+                position = 0;
+                limit = read;
+                continue;
+            }
+            char c = buffer[position++];
+            if (keep(c)) {
+                out[offset + written++] = c;
+            }
+        }
+        return written;
+    }
+    
+    private boolean keep(char c) {
+        if (!inString) {
+            switch (c) {
+                case '"':
+                    inString = true;
+                    capping = !expectingName;
+                    length = 0;
+                    break;
+                case '{':
+                case '[':
+                    if (depth == objects.length) {
+                        objects = Arrays.copyOf(objects, depth * 2);
+                    }
+                    objects[depth++] = c == '{';
+                    expectingName = c == '{';
+                    break;
+                case '}':
+                case ']':
+                    depth = Math.max(0, depth - 1);
+                    expectingName = false;
+                    break;
+                case ',':
+                    expectingName = depth > 0 && objects[depth - 1];
+                    break;
+                case ':':
+                    expectingName = false;
+                    break;
+                default:
+                    break;
+            }
+            return true;
+        }
+        if (escapeLeft < 0) {
+            escapeLeft = c == 'u' ? 4 : 0;
+            return !droppingEscape;
+        }
+        if (escapeLeft > 0) {
+            escapeLeft--;
+            return !droppingEscape;
+        }
+        if (c == '"') {
+            inString = false;
+            return true;
+        }
+        
+        boolean over = capping && length >= maxLength;
+        if (c == '\\') {
+            escapeLeft = -1;
+            droppingEscape = over;
+        }
+        if (over) {
+            return false;
+        }
+        length++;
+        return true;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped characters still have to pass through the string state
+        char[] skipped = new char[(int) Math.min(Math.max(n, 0), buffer.length)];
+        long total = 0;
+        while (total < n) {
+            int read = read(skipped, 0, (int) Math.min(n - total, skipped.length));
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+    
+    @Override
+    public boolean ready() throws IOException {
+        return position < limit || in.ready();
+    }
+    
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
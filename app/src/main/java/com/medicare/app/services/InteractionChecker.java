@@ -0,0 +1,206 @@
+package com.medicare.app.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.medicare.app.models.Medicine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Checks a newly saved medicine against the user's other active medicines: a shared active
+ * ingredient is reported as a duplicate, and a label whose warnings or contraindications name
+ * another medicine's ingredient as a possible interaction. Only labels already on the device
+ * (the label index or MedicineInfoCache) are used, so the check never waits on the network.
+ */
+public class InteractionChecker {
+    
+    private static final String TAG = "InteractionChecker";
+    // Shorter terms match too much ordinary label prose
+    private static final int MIN_INGREDIENT_LENGTH = 4;
+    
+    private static final Pattern PARENTHESES = Pattern.compile("\\([^)]*\\)");
+    private static final Pattern HEADING = Pattern.compile("\\b(active ingredients?|purposes?)\\b");
+    // Amounts and list separators end one ingredient and start the next
+    private static final Pattern SEPARATORS = Pattern.compile(
+            "\\d[\\d.,]*\\s*((mg|mcg|g|ml|iu|units?)\\b|%)?|[,;/+:]|\\band\\b|\\beach\\b");
+    // Salt and pharmacopeia suffixes, so "naproxen sodium" and "naproxen" are the same ingredient
+    private static final Set<String> SUFFIXES = new HashSet<>(Arrays.asList(
+            "usp", "hcl", "hydrochloride", "sodium", "potassium", "calcium", "sulfate", "citrate",
+            "maleate", "tartrate", "succinate", "besylate", "mesylate", "phosphate", "bromide"));
+    
+    public enum Kind { DUPLICATE, INTERACTION }
+    
+    public static class Warning {
+        public final Kind kind;
+        public final String medicine;
+        public final String otherMedicine;
+        public final String ingredient;
+        
+        Warning(Kind kind, String medicine, String otherMedicine, String ingredient) {
+            this.kind = kind;
+            this.medicine = medicine;
+            this.otherMedicine = otherMedicine;
+            this.ingredient = ingredient;
+        }
+        
+        public String getMessage() {
+            if (kind == Kind.DUPLICATE) {
+                return medicine + " and " + otherMedicine + " both contain " + ingredient
+                        + ". Taking both may double the dose.";
+            }
+            return "The " + medicine + " label warns about " + ingredient + ", which is in "
+                    + otherMedicine + ".";
+        }
+    }
+    
+    private final MedicineInfoCache cache;
+    private final LabelIndex labelIndex;
+    
+    public InteractionChecker(Context context) {
+        this.cache = MedicineInfoCache.getInstance(context);
+        this.labelIndex = LabelIndex.getInstance(context);
+    }
+    
+    /**
+     * Warnings for pairs that include the added medicine, which may or may not be in medicines
+     * already. Reading the labels does disk I/O, so call off the main thread; the matching
+     * itself stays within a frame for dozens of medicines.
+     */
+    public List<Warning> check(Medicine added, List<Medicine> medicines) {
+        List<String> names = new ArrayList<>();
+        names.add(added.getName());
+        for (Medicine medicine : medicines) {
+            if (medicine.getId() != added.getId()) {
+                names.add(medicine.getName());
+            }
+        }
+        
+        List<MedicineInfoService.MedicineInfo> labels = new ArrayList<>(names.size());
+        for (String name : names) {
+            labels.add(findLabel(MedicineInfoCache.normalizeKey(name)));
+        }
+        
+        long start = System.nanoTime();
+        List<Warning> warnings = check(names, labels);
+        Log.d(TAG, "Checked " + names.size() + " medicines in " + (System.nanoTime() - start) / 1000 + " us, "
+                + warnings.size() + " warnings");
+        return warnings;
+    }
+    
+    // names.get(0) is the added medicine; labels holds each one's label, or null when unknown
+    static List<Warning> check(List<String> names, List<MedicineInfoService.MedicineInfo> labels) {
+        // Inverted index: ingredient to the medicines containing it
+        Map<String, List<Integer>> medicinesByIngredient = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            for (String ingredient : ingredientsOf(names.get(i), labels.get(i))) {
+                List<Integer> holders = medicinesByIngredient.get(ingredient);
+                if (holders == null) {
+                    holders = new ArrayList<>(2);
+                    medicinesByIngredient.put(ingredient, holders);
+                }
+                holders.add(i);
+            }
+        }
+        
+        List<Warning> warnings = new ArrayList<>();
+        Set<Integer> duplicates = new HashSet<>();
+        for (Map.Entry<String, List<Integer>> entry : medicinesByIngredient.entrySet()) {
+            List<Integer> holders = entry.getValue();
+            if (holders.get(0) != 0) {
+                continue;
+            }
+            for (int h = 1; h < holders.size(); h++) {
+                int other = holders.get(h);
+                duplicates.add(other);
+                warnings.add(new Warning(Kind.DUPLICATE, names.get(0), names.get(other), entry.getKey()));
+            }
+        }
+        
+        // One automaton over every ingredient scans each label once
+        List<String> ingredients = new ArrayList<>(medicinesByIngredient.keySet());
+        KeywordMatcher matcher = new KeywordMatcher(ingredients);
+        Set<String> reported = new HashSet<>();
+        for (int i = 0; i < names.size(); i++) {
+            MedicineInfoService.MedicineInfo label = labels.get(i);
+            if (label == null || (i != 0 && duplicates.contains(i))) {
+                continue;
+            }
+            final int labelOwner = i;
+            KeywordMatcher.MatchHandler handler = (keyword, begin, end) -> {
+                for (int holder : medicinesByIngredient.get(ingredients.get(keyword))) {
+                    // Only pairs with the added medicine, and not ones already reported as duplicates
+                    boolean pairsWithAdded = labelOwner == 0 ? holder != 0 : holder == 0;
+                    int other = labelOwner == 0 ? holder : labelOwner;
+                    if (!pairsWithAdded || duplicates.contains(other)
+                            || !reported.add(labelOwner + ":" + holder)) {
+                        continue;
+                    }
+                    warnings.add(new Warning(Kind.INTERACTION, names.get(labelOwner), names.get(holder),
+                            ingredients.get(keyword)));
+                }
+            };
+            matcher.findWords(label.warnings, handler);
+            matcher.findWords(label.contraindications, handler);
+        }
+        return warnings;
+    }
+    
+    // The medicine's own name and drug name, plus what the label lists as active ingredients
+    static Set<String> ingredientsOf(String name, MedicineInfoService.MedicineInfo label) {
+        Set<String> ingredients = new LinkedHashSet<>();
+        addIngredients(name, ingredients);
+        if (label != null) {
+            addIngredients(label.drugName, ingredients);
+            addIngredients(label.activeIngredient, ingredients);
+        }
+        return ingredients;
+    }
+    
+    private static void addIngredients(String text, Set<String> out) {
+        String cleaned = PARENTHESES.matcher(text.toLowerCase(Locale.US)).replaceAll(" ");
+        cleaned = HEADING.matcher(cleaned).replaceAll(" ");
+        for (String part : SEPARATORS.split(cleaned)) {
+            String ingredient = stripSuffixes(part.trim().replaceAll("\\s+", " "));
+            if (ingredient.length() >= MIN_INGREDIENT_LENGTH) {
+                out.add(ingredient);
+            }
+        }
+    }
+    
+    private static String stripSuffixes(String ingredient) {
+        int end = ingredient.length();
+        while (end > 0) {
+            int space = ingredient.lastIndexOf(' ', end - 1);
+            if (space < 0 || !SUFFIXES.contains(ingredient.substring(space + 1, end))) {
+                break;
+            }
+            end = space;
+        }
+        return ingredient.substring(0, end);
+    }
+    
+    private MedicineInfoService.MedicineInfo findLabel(String key) {
+        if (key.isEmpty()) {
+            return null;
+        }
+        MedicineInfoService.MedicineInfo info = labelIndex.lookup(key);
+        if (info == null) {
+            info = cache.getFromMemory(key);
+        }
+        if (info == null) {
+            // An old label is still a fair guide to what a medicine contains
+            info = cache.getFromDisk(key, true);
+        }
+        return info;
+    }
+}
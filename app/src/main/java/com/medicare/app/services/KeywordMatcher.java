@@ -0,0 +1,147 @@
+package com.medicare.app.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Aho-Corasick automaton that finds every occurrence of a set of keywords in one pass over a
+ * text, however many keywords there are. Matching ignores ASCII case and only reports whole
+ * words. Keywords with characters outside ASCII are ignored, and a repeated keyword is
+ * reported under its first index. Immutable and thread-safe once built.
+ */
+public class KeywordMatcher {
+    
+    public interface MatchHandler {
+        // keyword is the index into the list the matcher was built from; end is exclusive
+        void onMatch(int keyword, int start, int end);
+    }
+    
+    private static final int ASCII = 128;
+    
+    // Symbol for each lowercase ASCII character used by a keyword; 0 for every other character
+    private final int[] symbols = new int[ASCII];
+    private final int alphabetSize;
+    // Full transition table, states * alphabetSize, so scanning never follows failure links
+    private final int[] transitions;
+    private final int[] keywordAt;
+    private final int[] keywordLength;
+    // Next state down the failure chain that ends a keyword, -1 when none
+    private final int[] outputLink;
+    
+    public KeywordMatcher(List<String> keywords) {
+        List<String> patterns = new ArrayList<>(keywords.size());
+        int alphabet = 1;
+        for (String keyword : keywords) {
+            String pattern = keyword.toLowerCase(Locale.US);
+            if (!isAscii(pattern)) {
+                pattern = "";
+            }
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (symbols[c] == 0) {
+                    symbols[c] = alphabet++;
+                }
+            }
+            patterns.add(pattern);
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            symbols[c] = symbols[Character.toLowerCase(c)];
+        }
+        alphabetSize = alphabet;
+        
+        // Trie first; missing edges are 0, which is also the root
+        int maxStates = 1;
+        for (String pattern : patterns) {
+            maxStates += pattern.length();
+        }
+        int[] table = new int[maxStates * alphabetSize];
+        int[] keywordAtState = new int[maxStates];
+        Arrays.fill(keywordAtState, -1);
+        int states = 1;
+        for (int k = 0; k < patterns.size(); k++) {
+            String pattern = patterns.get(k);
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int slot = state * alphabetSize + symbols[pattern.charAt(i)];
+                if (table[slot] == 0) {
+                    table[slot] = states++;
+                }
+                state = table[slot];
+            }
+            if (keywordAtState[state] < 0) {
+                keywordAtState[state] = k;
+            }
+        }
+        
+        // Breadth-first, each state's missing edges are copied from its failure state
+        int[] failure = new int[states];
+        int[] outputs = new int[states];
+        Arrays.fill(outputs, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int s = 1; s < alphabetSize; s++) {
+            if (table[s] != 0) {
+                queue.add(table[s]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fail = failure[state];
+            outputs[state] = keywordAtState[fail] >= 0 ? fail : outputs[fail];
+            for (int s = 1; s < alphabetSize; s++) {
+                int slot = state * alphabetSize + s;
+                int next = table[slot];
+                if (next != 0) {
+                    failure[next] = table[fail * alphabetSize + s];
+                    queue.add(next);
+                } else {
+                    table[slot] = table[fail * alphabetSize + s];
+                }
+            }
+        }
+        
+        transitions = Arrays.copyOf(table, states * alphabetSize);
+        keywordAt = Arrays.copyOf(keywordAtState, states);
+        outputLink = outputs;
+        keywordLength = new int[patterns.size()];
+        for (int k = 0; k < patterns.size(); k++) {
+            keywordLength[k] = patterns.get(k).length();
+        }
+    }
+    
+    // Reports each whole-word occurrence of a keyword, in order of where it ends
+    public void findWords(CharSequence text, MatchHandler handler) {
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            state = transitions[state * alphabetSize + (c < ASCII ? symbols[c] : 0)];
+            for (int s = keywordAt[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                int keyword = keywordAt[s];
+                int start = i + 1 - keywordLength[keyword];
+                if ((start == 0 || !isWordChar(text.charAt(start - 1)))
+                        && (i + 1 == length || !isWordChar(text.charAt(i + 1)))) {
+                    handler.onMatch(keyword, start, i + 1);
+                }
+            }
+        }
+    }
+    
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+    
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= ASCII) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,323 @@
+package com.medicare.app.services;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * On-device index of openFDA drug labels imported from a bulk download, so lookups work
+ * offline. Every brand and generic name (normalized like cache keys) is held sorted in memory
+ * and binary searched; it points at one deflated record in the data file, read with a seek.
+ */
+public class LabelIndex {
+    
+    private static final String TAG = "LabelIndex";
+    private static final String NAMES_FILE = "label_index_names.bin";
+    private static final String DATA_FILE = "label_index_data.bin";
+    private static final int FORMAT_VERSION = 1;
+    // Bulk labels carry long sections; the index keeps less of each than a live lookup does
+    private static final int MAX_FIELD_LENGTH = 2000;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+    
+    private static volatile LabelIndex instance;
+    
+    private final File namesFile;
+    private final File dataFile;
+    private final Object lock = new Object();
+    
+    // Loaded on first lookup; names stays null when there is no usable index
+    private boolean loaded;
+    private String[] names;
+    private long[] offsets;
+    private RandomAccessFile data;
+    
+    public static class ImportResult {
+        public final int labels;
+        public final int names;
+        public final long sizeBytes;
+        public final long elapsedMillis;
+        
+        ImportResult(int labels, int names, long sizeBytes, long elapsedMillis) {
+            this.labels = labels;
+            this.names = names;
+            this.sizeBytes = sizeBytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d labels, %d names, %.1f MB in %d s",
+                    labels, names, sizeBytes / (1024.0 * 1024.0), elapsedMillis / 1000);
+        }
+    }
+    
+    public static LabelIndex getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LabelIndex.class) {
+                if (instance == null) {
+                    File dir = context.getApplicationContext().getFilesDir();
+                    instance = new LabelIndex(new File(dir, NAMES_FILE), new File(dir, DATA_FILE));
+                }
+            }
+        }
+        return instance;
+    }
+    
+    private LabelIndex(File namesFile, File dataFile) {
+        this.namesFile = namesFile;
+        this.dataFile = dataFile;
+    }
+    
+    /**
+     * Returns the indexed label for a normalized name, or null when it is not indexed or no
+     * index has been imported. Does disk I/O; the first call loads the name table.
+     */
+    public MedicineInfoService.MedicineInfo lookup(String key) {
+        byte[] record;
+        synchronized (lock) {
+            ensureLoaded();
+            if (names == null) {
+                return null;
+            }
+            int index = Arrays.binarySearch(names, key);
+            if (index < 0) {
+                return null;
+            }
+            try {
+                data.seek(offsets[index]);
+                int length = data.readInt();
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    throw new IOException("Corrupt index record");
+                }
+                record = new byte[length];
+                data.readFully(record);
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading label index", e);
+                return null;
+            }
+        }
+        
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(record)))) {
+            MedicineInfoService.MedicineInfo info = new MedicineInfoService.MedicineInfo();
+            info.drugName = in.readUTF();
+            info.description = in.readUTF();
+            info.dosageAndAdministration = in.readUTF();
+            info.contraindications = in.readUTF();
+            info.adverseReactions = in.readUTF();
+            info.warnings = in.readUTF();
+            info.activeIngredient = in.readUTF();
+            info.manufacturer = in.readUTF();
+            return info;
+        } catch (IOException e) {
+            Log.e(TAG, "Error decoding label index record", e);
+            return null;
+        }
+    }
+    
+    // Every indexed name, normalized and sorted; empty when none has been imported. Does disk I/O.
+    public List<String> getNames() {
+        synchronized (lock) {
+            ensureLoaded();
+            return names == null ? Collections.<String>emptyList() : Arrays.asList(names.clone());
+        }
+    }
+    
+    // Bytes the index occupies on disk, 0 when none has been imported
+    public long getSizeBytes() {
+        return namesFile.length() + dataFile.length();
+    }
+    
+    /**
+     * Builds a new index from an openFDA drug-label bulk file (the JSON, or the .zip it is
+     * published as), streaming it so only one label is in memory at a time. The current index
+     * keeps serving until the new one is complete. Long-running; call off the main thread.
+     */
+    public ImportResult importBulk(InputStream source) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        File tempData = new File(dataFile.getPath() + ".tmp");
+        File tempNames = new File(namesFile.getPath() + ".tmp");
+        // Written to both files so a names table is never paired with another import's data
+        long importId = new Random().nextLong();
+        
+        Map<String, Long> offsetsByName = new HashMap<>();
+        int labels;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempData)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(importId);
+            long[] position = {out.size()};
+            
+            LabelParser parser = new LabelParser(MAX_FIELD_LENGTH);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(openJson(source), StandardCharsets.UTF_8));
+            labels = parser.forEachResult(reader, (info, labelNames) -> {
+                // Many labels share a name (every ibuprofen generic); the first one imported keeps it
+                List<String> newNames = new ArrayList<>();
+                for (String name : labelNames) {
+                    String key = MedicineInfoCache.normalizeKey(name);
+                    if (!key.isEmpty() && !offsetsByName.containsKey(key) && !newNames.contains(key)) {
+                        newNames.add(key);
+                    }
+                }
+                if (newNames.isEmpty()) {
+                    return;
+                }
+                
+                byte[] record = encode(info);
+                for (String key : newNames) {
+                    offsetsByName.put(key, position[0]);
+                }
+                out.writeInt(record.length);
+                out.write(record);
+                position[0] += 4 + record.length;
+            });
+        } catch (IOException | RuntimeException e) {
+            tempData.delete();
+            throw e;
+        }
+        
+        List<String> sortedNames = new ArrayList<>(offsetsByName.keySet());
+        Collections.sort(sortedNames);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempNames)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(importId);
+            out.writeInt(sortedNames.size());
+            for (String name : sortedNames) {
+                out.writeUTF(name);
+                out.writeLong(offsetsByName.get(name));
+            }
+        } catch (IOException e) {
+            tempData.delete();
+            tempNames.delete();
+            throw e;
+        }
+        
+        synchronized (lock) {
+            closeData();
+            if (!tempData.renameTo(dataFile) || !tempNames.renameTo(namesFile)) {
+                tempData.delete();
+                tempNames.delete();
+                throw new IOException("Could not replace the label index");
+            }
+            // Reloaded lazily by the next lookup
+            loaded = false;
+            names = null;
+            offsets = null;
+        }
+        
+        ImportResult result = new ImportResult(labels, sortedNames.size(), getSizeBytes(),
+                SystemClock.elapsedRealtime() - start);
+        Log.d(TAG, "Imported label index: " + result);
+        return result;
+    }
+    
+    // openFDA publishes each part as a zip holding one JSON file; plain JSON is accepted too
+    private static InputStream openJson(InputStream source) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(source);
+        in.mark(2);
+        boolean zipped = in.read() == 'P' && in.read() == 'K';
+        in.reset();
+        if (!zipped) {
+            return in;
+        }
+        
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory() && entry.getName().toLowerCase(Locale.US).endsWith(".json")) {
+                return zip;
+            }
+        }
+        throw new IOException("No JSON file in the archive");
+    }
+    
+    private static byte[] encode(MedicineInfoService.MedicineInfo info) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeUTF(info.drugName);
+            out.writeUTF(info.description);
+            out.writeUTF(info.dosageAndAdministration);
+            out.writeUTF(info.contraindications);
+            out.writeUTF(info.adverseReactions);
+            out.writeUTF(info.warnings);
+            out.writeUTF(info.activeIngredient);
+            out.writeUTF(info.manufacturer);
+        }
+        return bytes.toByteArray();
+    }
+    
+    // Callers hold lock
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(namesFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                Log.w(TAG, "Label index format changed, it needs a new import");
+                return;
+            }
+            long importId = in.readLong();
+            int count = in.readInt();
+            String[] loadedNames = new String[count];
+            long[] loadedOffsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                loadedNames[i] = in.readUTF();
+                loadedOffsets[i] = in.readLong();
+            }
+            
+            RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+            if (file.readInt() != FORMAT_VERSION || file.readLong() != importId) {
+                Log.w(TAG, "Label index files do not match, it needs a new import");
+                file.close();
+                return;
+            }
+            names = loadedNames;
+            offsets = loadedOffsets;
+            data = file;
+            Log.d(TAG, "Loaded label index with " + count + " names");
+        } catch (FileNotFoundException e) {
+            // Nothing imported yet
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading label index", e);
+        }
+    }
+    
+    private void closeData() {
+        if (data != null) {
+            try {
+                data.close();
+            } catch (IOException ignored) {
+            }
+            data = null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.medicare.app.services;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for openFDA drug label responses. Walks the response with a JsonReader,
+ * keeps only the fields MedicineInfo shows and skips everything else without building it, so a
+ * label of several hundred KB never sits in memory whole. Strings are cut to maxFieldLength by
+ * a FieldCapReader underneath, before the JsonReader buffers them.
+ */
+public class LabelParser {
+    
+    public static final int DEFAULT_MAX_FIELD_LENGTH = 4000;
+    
+    private final int maxFieldLength;
+    
+    public interface LabelHandler {
+        // names holds every brand and generic name on the label, as written
+        void onLabel(MedicineInfoService.MedicineInfo info, List<String> names) throws IOException;
+    }
+    
+    public LabelParser() {
+        this(DEFAULT_MAX_FIELD_LENGTH);
+    }
+    
+    public LabelParser(int maxFieldLength) {
+        this.maxFieldLength = maxFieldLength;
+    }
+    
+    /**
+     * Reads the first entry of the "results" array, or returns null when the response has
+     * none. Throws MalformedJsonException or IllegalStateException on an unexpected shape.
+     */
+    public MedicineInfoService.MedicineInfo parseFirstResult(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(new FieldCapReader(in, maxFieldLength));
+        MedicineInfoService.MedicineInfo info = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"results".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            
+            reader.beginArray();
+            if (reader.hasNext()) {
+                info = readLabel(reader, null);
+                // limit=1, but anything else the server sends is never needed
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+            }
+            reader.endArray();
+            // Nothing after the results array matters either
+            break;
+        }
+        return info;
+    }
+    
+    /**
+     * Hands every entry of the "results" array to the handler in turn, holding one label at a
+     * time, for bulk downloads far larger than memory.
+     */
+    public int forEachResult(Reader in, LabelHandler handler) throws IOException {
+        JsonReader reader = new JsonReader(new FieldCapReader(in, maxFieldLength));
+        int count = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"results".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            
+            reader.beginArray();
+            while (reader.hasNext()) {
+                List<String> names = new ArrayList<>();
+                MedicineInfoService.MedicineInfo info = readLabel(reader, names);
+                handler.onLabel(info, names);
+                count++;
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return count;
+    }
+    
+    // Reads one label object, positioned at its BEGIN_OBJECT, also collecting all brand and
+    // generic names into namesOut when it is not null
+    private MedicineInfoService.MedicineInfo readLabel(JsonReader reader, List<String> namesOut) throws IOException {
+        MedicineInfoService.MedicineInfo info = new MedicineInfoService.MedicineInfo();
+        String genericName = "";
+        String purpose = "";
+        String indications = "";
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "openfda":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "brand_name":
+                                info.drugName = readFirstString(reader, namesOut);
+                                break;
+                            case "generic_name":
+                                genericName = readFirstString(reader, namesOut);
+                                break;
+                            case "manufacturer_name":
+                                info.manufacturer = readFirstString(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "active_ingredient":
+                    info.activeIngredient = readFirstString(reader);
+                    break;
+                case "purpose":
+                    purpose = readFirstString(reader);
+                    break;
+                case "indications_and_usage":
+                    indications = readFirstString(reader);
+                    break;
+                case "dosage_and_administration":
+                    info.dosageAndAdministration = readFirstString(reader);
+                    break;
+                case "contraindications":
+                    info.contraindications = readFirstString(reader);
+                    break;
+                case "adverse_reactions":
+                    info.adverseReactions = readFirstString(reader);
+                    break;
+                case "warnings":
+                    info.warnings = readFirstString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        // Keys arrive in any order, so the fallbacks are applied once the whole label is read
+        if (info.drugName.isEmpty()) {
+            info.drugName = genericName;
+        }
+        info.description = !purpose.isEmpty() ? purpose : indications;
+        return info;
+    }
+    
+    // openFDA wraps nearly every field in an array; only the first element is shown
+    private String readFirstString(JsonReader reader) throws IOException {
+        return readFirstString(reader, null);
+    }
+    
+    // Also adds every string element to allOut when it is not null
+    private String readFirstString(JsonReader reader, List<String> allOut) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return "";
+        }
+        if (token != JsonToken.BEGIN_ARRAY) {
+            String value = reader.nextString();
+            if (allOut != null) {
+                allOut.add(value);
+            }
+            return value;
+        }
+        
+        String first = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.STRING || (first != null && allOut == null)) {
+                reader.skipValue();
+                continue;
+            }
+            String value = reader.nextString();
+            if (first == null) {
+                first = value;
+            }
+            if (allOut != null) {
+                allOut.add(value);
+            }
+        }
+        reader.endArray();
+        return first != null ? first : "";
+    }
+}
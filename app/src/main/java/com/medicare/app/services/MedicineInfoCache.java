@@ -0,0 +1,307 @@
+package com.medicare.app.services;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Two-tier cache of parsed openFDA lookups keyed by normalized drug name: a small in-memory LRU
+ * in front of one compact file per drug in the cache directory, with a TTL and a byte cap on
+ * the whole directory. Shared by every MedicineInfoService in the process.
+ */
+public class MedicineInfoCache {
+
+    private static final String TAG = "MedicineInfoCache";
+    private static final String DIR_NAME = "medicine_info";
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int MAX_MEMORY_ENTRIES = 32;
+    private static final long MAX_DISK_BYTES = 512 * 1024;
+    public static final long TTL_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private static volatile MedicineInfoCache instance;
+
+    // HTTP validators of the response an entry was parsed from, for conditional revalidation
+    public static class Validators {
+        public final String url;
+        public final String etag;
+        public final String lastModified;
+
+        public Validators(String url, String etag, String lastModified) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public boolean isEmpty() {
+            return etag == null && lastModified == null;
+        }
+    }
+
+    private final File directory;
+    private final LruCache<String, MedicineInfoService.MedicineInfo> memory = new LruCache<>(MAX_MEMORY_ENTRIES);
+    private final Object diskLock = new Object();
+
+    private final AtomicInteger memoryHits = new AtomicInteger();
+    private final AtomicInteger diskHits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public static MedicineInfoCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MedicineInfoCache.class) {
+                if (instance == null) {
+                    instance = new MedicineInfoCache(new File(context.getApplicationContext().getCacheDir(), DIR_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private MedicineInfoCache(File directory) {
+        this.directory = directory;
+    }
+
+    // Case, surrounding and repeated whitespace do not make a different drug
+    public static String normalizeKey(String medicineName) {
+        return medicineName == null ? "" : medicineName.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+    }
+
+    // Memory only, safe to call on the main thread
+    public MedicineInfoService.MedicineInfo getFromMemory(String key) {
+        MedicineInfoService.MedicineInfo info = memory.get(key);
+        if (info != null) {
+            memoryHits.incrementAndGet();
+        }
+        return info;
+    }
+
+    /**
+     * Reads the disk tier, promoting a hit into memory. With allowExpired an entry past its TTL is
+     * still returned, for when the network is unavailable. Does disk I/O.
+     */
+    public MedicineInfoService.MedicineInfo getFromDisk(String key, boolean allowExpired) {
+        File file = fileFor(key);
+        synchronized (diskLock) {
+            if (!file.exists()) {
+                if (!allowExpired) {
+                    misses.incrementAndGet();
+                }
+                return null;
+            }
+
+            boolean expired = System.currentTimeMillis() - file.lastModified() > TTL_MILLIS;
+            if (expired && !allowExpired) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            MedicineInfoService.MedicineInfo info = read(file, key, null);
+            if (info == null) {
+                file.delete();
+                return null;
+            }
+            if (!expired) {
+                diskHits.incrementAndGet();
+                memory.put(key, info);
+            }
+            return info;
+        }
+    }
+
+    // Whether a lookup would be answered without the network; no stats, no promotion. Does disk I/O.
+    public boolean isFresh(String key) {
+        File file = fileFor(key);
+        synchronized (diskLock) {
+            return file.exists() && System.currentTimeMillis() - file.lastModified() <= TTL_MILLIS;
+        }
+    }
+
+    public void put(String key, MedicineInfoService.MedicineInfo info) {
+        put(key, info, null);
+    }
+
+    public void put(String key, MedicineInfoService.MedicineInfo info, Validators validators) {
+        memory.put(key, info);
+        synchronized (diskLock) {
+            write(fileFor(key), key, info, validators);
+            trimDisk();
+        }
+    }
+
+    // Validators stored with the entry, expired or not, or null when there are none. Does disk I/O.
+    public Validators getValidators(String key) {
+        File file = fileFor(key);
+        Validators[] validators = new Validators[1];
+        synchronized (diskLock) {
+            if (!file.exists() || read(file, key, validators) == null) {
+                return null;
+            }
+        }
+        return validators[0];
+    }
+
+    /**
+     * The server answered 304 for an entry: restarts its TTL and returns it, or null if it has
+     * been evicted in the meantime. Does disk I/O.
+     */
+    public MedicineInfoService.MedicineInfo refresh(String key) {
+        File file = fileFor(key);
+        synchronized (diskLock) {
+            MedicineInfoService.MedicineInfo info = file.exists() ? read(file, key, null) : null;
+            if (info == null) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            memory.put(key, info);
+            return info;
+        }
+    }
+
+    public int getMemoryHits() { return memoryHits.get(); }
+    public int getDiskHits() { return diskHits.get(); }
+    public int getMisses() { return misses.get(); }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "MedicineInfoCache[memory hits=%d, disk hits=%d, misses=%d, memory entries=%d]",
+                getMemoryHits(), getDiskHits(), getMisses(), memory.size());
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, Integer.toHexString(key.hashCode()) + ".bin");
+    }
+
+    // Oldest-written files go first; the TTL clock restarts whenever an entry is refreshed
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= MAX_DISK_BYTES) {
+                break;
+            }
+            total -= file.length();
+            file.delete();
+        }
+    }
+
+    // Fills validatorsOut[0] when given
+    private static MedicineInfoService.MedicineInfo read(File file, String key, Validators[] validatorsOut) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            // A different key means a hash collision; treat it as a miss
+            if (in.readInt() != FORMAT_VERSION || !key.equals(readString(in))) {
+                return null;
+            }
+            MedicineInfoService.MedicineInfo info = new MedicineInfoService.MedicineInfo();
+            info.drugName = readString(in);
+            info.description = readString(in);
+            info.dosageAndAdministration = readString(in);
+            info.contraindications = readString(in);
+            info.adverseReactions = readString(in);
+            info.warnings = readString(in);
+            info.activeIngredient = readString(in);
+            info.manufacturer = readString(in);
+            if (validatorsOut != null && in.readBoolean()) {
+                validatorsOut[0] = new Validators(readString(in), readNullableString(in), readNullableString(in));
+            }
+            return info;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading cached medicine info", e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void write(File file, String key, MedicineInfoService.MedicineInfo info, Validators validators) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create cache directory " + directory);
+            return;
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, key);
+            writeString(out, info.drugName);
+            writeString(out, info.description);
+            writeString(out, info.dosageAndAdministration);
+            writeString(out, info.contraindications);
+            writeString(out, info.adverseReactions);
+            writeString(out, info.warnings);
+            writeString(out, info.activeIngredient);
+            writeString(out, info.manufacturer);
+            boolean hasValidators = validators != null && !validators.isEmpty();
+            out.writeBoolean(hasValidators);
+            if (hasValidators) {
+                writeString(out, validators.url);
+                writeNullableString(out, validators.etag);
+                writeNullableString(out, validators.lastModified);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing cached medicine info", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    // Label sections can exceed writeUTF's 64 KB limit, so strings are length-prefixed UTF-8
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_DISK_BYTES) {
+            throw new IOException("Corrupt cache entry");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+}
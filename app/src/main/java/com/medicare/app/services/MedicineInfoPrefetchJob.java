@@ -0,0 +1,146 @@
+package com.medicare.app.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import com.medicare.app.database.DatabaseHelper;
+import com.medicare.app.models.Medicine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms MedicineInfoCache for every active medicine while the device is idle on an unmetered
+ * network, so the first "Learn More" tap is usually a local read. Scheduled after login and
+ * whenever a medicine is saved; entries that are still fresh are skipped.
+ */
+public class MedicineInfoPrefetchJob extends JobService {
+    
+    private static final String TAG = "MedicineInfoPrefetch";
+    private static final int JOB_ID = 4301;
+    private static final int MAX_CONCURRENT_LOOKUPS = 2;
+    // Well inside the ten minutes JobScheduler allows a run
+    private static final long BATCH_TIMEOUT_SECONDS = 180;
+    private static final long LOOKUPS_TIMEOUT_SECONDS = 120;
+    
+    private volatile boolean stopped;
+    
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, MedicineInfoPrefetchJob.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresDeviceIdle(true)
+                .build();
+        // Same job id, so a burst of saves replaces the pending run instead of queueing several
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(TAG, "Could not schedule medicine info prefetch");
+        }
+    }
+    
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = false;
+        new Thread(() -> {
+            boolean completed = false;
+            try {
+                completed = prefetch();
+            } catch (Exception e) {
+                Log.e(TAG, "Error prefetching medicine info", e);
+            } finally {
+                jobFinished(params, !completed);
+            }
+        }, "MedicineInfoPrefetch").start();
+        return true;
+    }
+    
+    // Idle or the unmetered network ended; lookups already sent finish, the rest wait for a retry
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        stopped = true;
+        return true;
+    }
+    
+    // Returns false when stopped before every stale medicine was looked up
+    private boolean prefetch() throws InterruptedException {
+        List<Medicine> medicines;
+        DatabaseHelper databaseHelper = new DatabaseHelper(this);
+        try {
+            medicines = databaseHelper.getActiveMedicinesForAllUsers();
+        } finally {
+            databaseHelper.close();
+        }
+        
+        MedicineInfoCache cache = MedicineInfoCache.getInstance(this);
+        MedicineInfoService service = MedicineInfoService.getInstance(this);
+        List<String> stale = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Medicine medicine : medicines) {
+            String key = MedicineInfoCache.normalizeKey(medicine.getName());
+            if (!key.isEmpty() && seen.add(key) && !cache.isFresh(key)) {
+                stale.add(medicine.getName());
+            }
+        }
+        if (stale.isEmpty() || stopped) {
+            return !stopped;
+        }
+        
+        // One or two batched searches cover most of the list
+        CountDownLatch batchDone = new CountDownLatch(1);
+        List<String> missing = new ArrayList<>();
+        service.getMedicineInfoBatch(stale, (found, notFound) -> {
+            missing.addAll(notFound);
+            batchDone.countDown();
+        });
+        if (!batchDone.await(BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            // The batch keeps running and still fills the cache; the retry skips what it stored
+            Log.w(TAG, "Batch lookup of " + stale.size() + " names timed out, rescheduling");
+            return false;
+        }
+        
+        // Names the batch could not match exactly get the single lookup's broader search
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_LOOKUPS);
+        AtomicInteger failed = new AtomicInteger();
+        for (String name : missing) {
+            if (stopped) {
+                break;
+            }
+            permits.acquire();
+            service.getMedicineInfo(name, new MedicineInfoService.MedicineInfoCallback() {
+                @Override
+                public void onSuccess(MedicineInfoService.MedicineInfo medicineInfo) {
+                    permits.release();
+                }
+                
+                @Override
+                public void onError(String error) {
+                    failed.incrementAndGet();
+                    permits.release();
+                }
+            });
+        }
+        // Wait for the lookups still running before the job reports done
+        if (!permits.tryAcquire(MAX_CONCURRENT_LOOKUPS, LOOKUPS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            Log.w(TAG, "Single lookups timed out, rescheduling");
+            return false;
+        }
+        
+        Log.d(TAG, "Prefetched " + (stale.size() - failed.get()) + " of " + stale.size() + " stale entries from "
+                + medicines.size() + " medicines (" + missing.size() + " outside the batch), " + cache);
+        return !stopped;
+    }
+}
@@ -1,26 +1,136 @@
 package com.medicare.app.services;
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import android.util.MalformedJsonException;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MedicineInfoService {
     private static final String TAG = "MedicineInfoService";
-    private static final String BASE_URL = "https://api.fda.gov/drug/label.json";
-    private ExecutorService executor = Executors.newFixedThreadPool(2);
-
+    public static final String DEFAULT_BASE_URL = "https://api.fda.gov/drug/label.json";
+    private static final String PARSE_ERROR_DESCRIPTION = "Error parsing medicine information";
+    private static final String BRAND_NAME_FIELD = "openfda.brand_name";
+    private static final String GENERIC_NAME_FIELD = "openfda.generic_name";
+    public static final long DEFAULT_HEDGE_DELAY_MILLIS = 500;
+    public static final long NO_DEADLINE = 0;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    // First try plus retries, per query
+    private static final int MAX_ATTEMPTS = 3;
+    // Batch searches: query length per request, labels per page, pages per chunk
+    private static final int MAX_BATCH_SEARCH_LENGTH = 1500;
+    private static final int BATCH_PAGE_SIZE = 100;
+    private static final int MAX_BATCH_PAGES = 3;
+    private static final int WORKER_THREADS = 2;
+    private static final long IDLE_THREAD_SECONDS = 60;
+    
+    private static volatile MedicineInfoService instance;
+    
+    // Lookups currently running, by cache key, with every caller waiting on each
+    private final Map<String, InFlight> inFlight = new HashMap<>();
+    private final ThreadPoolExecutor executor;
+    // Batch searches run page after page for minutes; kept off the pool single lookups need
+    private final ThreadPoolExecutor batchExecutor;
+    // Hedge delays and per-call deadlines
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MedicineInfoCache cache;
+    private final LabelIndex labelIndex;
+    private final LabelParser labelParser = new LabelParser();
+    private final OpenFdaClient client = new OpenFdaClient();
+    private final UpstreamHealth health = new UpstreamHealth();
+    private volatile long hedgeDelayMillis = DEFAULT_HEDGE_DELAY_MILLIS;
+    private volatile String baseUrl = DEFAULT_BASE_URL;
+    
+    public static MedicineInfoService getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MedicineInfoService.class) {
+                if (instance == null) {
+                    instance = new MedicineInfoService(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+    
+    // Package-private so tests get their own pools and circuit instead of the process-wide instance
+    MedicineInfoService(Context context) {
+        this.cache = MedicineInfoCache.getInstance(context);
+        this.labelIndex = LabelIndex.getInstance(context);
+        // One pool for the process; its threads exit when idle rather than living as long as it does
+        this.executor = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS,
+                IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.batchExecutor = new ThreadPoolExecutor(1, 1,
+                IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.batchExecutor.allowCoreThreadTimeOut(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(1);
+        this.scheduler.setKeepAliveTime(IDLE_THREAD_SECONDS, TimeUnit.SECONDS);
+        this.scheduler.allowCoreThreadTimeOut(true);
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+    
+    public MedicineInfoCache getCache() {
+        return cache;
+    }
+    
+    // Circuit state, success and failure counts and latency of openFDA requests
+    public UpstreamHealth getUpstreamHealth() {
+        return health;
+    }
+    
+    /**
+     * Points lookups at another drug-label endpoint with the openFDA query syntax, such as a
+     * local stand-in server serving recorded labels. Applies to requests started afterwards;
+     * cached entries are kept, so clear app data when switching between servers.
+     */
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl != null ? baseUrl : DEFAULT_BASE_URL;
+    }
+    
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+    
+    // How long the brand-name query gets on its own before the generic-name query is also sent; 0 sends both at once
+    public void setHedgeDelayMillis(long hedgeDelayMillis) {
+        this.hedgeDelayMillis = Math.max(0, hedgeDelayMillis);
+    }
+    
     public interface MedicineInfoCallback {
         void onSuccess(MedicineInfo medicineInfo);
         void onError(String error);
     }
-
+    
     public static class MedicineInfo {
         public String drugName;
         public String description;
@@ -30,7 +140,7 @@ public class MedicineInfoService {
         public String warnings;
         public String activeIngredient;
         public String manufacturer;
-
+        
         public MedicineInfo() {
             this.drugName = "";
             this.description = "";
@@ -41,194 +151,672 @@ public class MedicineInfoService {
             this.activeIngredient = "";
             this.manufacturer = "";
         }
-
+        
         public boolean isEmpty() {
             return drugName.isEmpty() && description.isEmpty() && 
                    dosageAndAdministration.isEmpty() && contraindications.isEmpty() &&
                    adverseReactions.isEmpty() && warnings.isEmpty();
         }
     }
-
-    public void getMedicineInfo(String medicineName, MedicineInfoCallback callback) {
-        executor.execute(() -> {
-            try {
-                String encodedName = URLEncoder.encode(medicineName, "UTF-8");
-                String urlString = BASE_URL + "?search=openfda.brand_name:" + encodedName + 
-                                 "&limit=1";
-                
-                Log.d(TAG, "Fetching medicine info for: " + medicineName);
-                Log.d(TAG, "API URL: " + urlString);
-
-                URL url = new URL(urlString);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(10000);
-                connection.setReadTimeout(10000);
-
-                int responseCode = connection.getResponseCode();
-                Log.d(TAG, "Response code: " + responseCode);
-
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
-                    reader.close();
-
-                    MedicineInfo info = parseResponse(response.toString(), medicineName);
+    
+    /**
+     * One caller's pending lookup. Cancelling it drops that caller's callback, which is then
+     * never invoked; the underlying request is abandoned once no caller is waiting on it.
+     */
+    public final class Lookup implements Future<MedicineInfo> {
+        private final String cacheKey;
+        private final MedicineInfoCallback callback;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile MedicineInfo result;
+        private volatile String error;
+        private ScheduledFuture<?> deadline;
+        private Runnable onDone;
+        
+        Lookup(String cacheKey, MedicineInfoCallback callback) {
+            this.cacheKey = cacheKey;
+            this.callback = callback;
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!finish(null, null, true)) {
+                return false;
+            }
+            abandon(this);
+            return true;
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        @Override
+        public boolean isDone() {
+            return completed.get();
+        }
+        
+        @Override
+        public MedicineInfo get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+        
+        @Override
+        public MedicineInfo get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+        
+        private MedicineInfo report() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (result == null) {
+                throw new ExecutionException(new IOException(error));
+            }
+            return result;
+        }
+        
+        // Exactly one of success, error or cancellation wins; returns false for the others
+        boolean finish(MedicineInfo info, String failure, boolean cancel) {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+            cancelled = cancel;
+            result = info;
+            error = failure;
+            Runnable cleanup;
+            synchronized (this) {
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+                cleanup = onDone;
+                onDone = null;
+            }
+            done.countDown();
+            if (cleanup != null) {
+                cleanup.run();
+            }
+            
+            if (!cancel) {
+                if (info != null) {
                     callback.onSuccess(info);
                 } else {
-                    Log.e(TAG, "API request failed with code: " + responseCode);
-                    // Try alternative search by generic name
-                    tryGenericNameSearch(medicineName, callback);
+                    callback.onError(failure);
+                }
+            }
+            return true;
+        }
+        
+        synchronized void setDeadline(ScheduledFuture<?> deadline) {
+            if (completed.get()) {
+                deadline.cancel(false);
+            } else {
+                this.deadline = deadline;
+            }
+        }
+        
+        // Runs once the lookup completes, or straight away if it already has
+        void setOnDone(Runnable runnable) {
+            synchronized (this) {
+                if (!completed.get()) {
+                    onDone = runnable;
+                    return;
+                }
+            }
+            runnable.run();
+        }
+    }
+    
+    // One request shared by every caller asking for the same drug meanwhile
+    private static class InFlight {
+        final List<Lookup> waiters = new ArrayList<>();
+        HedgedLookup request;
+        boolean abandoned;
+    }
+    
+    public Lookup getMedicineInfo(String medicineName, MedicineInfoCallback callback) {
+        return getMedicineInfo(medicineName, NO_DEADLINE, callback);
+    }
+    
+    /**
+     * Looks a drug up, calling back on a background thread, a memory cache hit included, so the
+     * callback never runs before this returns. After deadlineMillis (unless it is NO_DEADLINE)
+     * this caller gets an error even if the request is still running.
+     */
+    public Lookup getMedicineInfo(String medicineName, long deadlineMillis, MedicineInfoCallback callback) {
+        final String cacheKey = MedicineInfoCache.normalizeKey(medicineName);
+        Lookup lookup = new Lookup(cacheKey, callback);
+        MedicineInfo cached = cache.getFromMemory(cacheKey);
+        if (cached != null) {
+            Log.d(TAG, "Memory cache hit for: " + medicineName);
+            // The scheduler only runs short tasks, so the hit is not queued behind network calls on the pool
+            scheduler.execute(() -> lookup.finish(cached, null, false));
+            return lookup;
+        }
+        
+        if (deadlineMillis > NO_DEADLINE) {
+            lookup.setDeadline(scheduler.schedule(() -> {
+                if (lookup.finish(null, "Medicine information lookup timed out", false)) {
+                    abandon(lookup);
+                }
+            }, deadlineMillis, TimeUnit.MILLISECONDS));
+        }
+        
+        InFlight flight;
+        synchronized (inFlight) {
+            flight = inFlight.get(cacheKey);
+            if (flight != null) {
+                // Same drug already being fetched; share its result instead of issuing another request
+                Log.d(TAG, "Joining in-flight lookup for: " + medicineName);
+                flight.waiters.add(lookup);
+                return lookup;
+            }
+            flight = new InFlight();
+            flight.waiters.add(lookup);
+            inFlight.put(cacheKey, flight);
+        }
+        
+        final InFlight started = flight;
+        fetch(medicineName, cacheKey, started, new MedicineInfoCallback() {
+            @Override
+            public void onSuccess(MedicineInfo medicineInfo) {
+                for (Lookup waiter : finishInFlight(cacheKey, started)) {
+                    waiter.finish(medicineInfo, null, false);
+                }
+            }
+            
+            @Override
+            public void onError(String error) {
+                for (Lookup waiter : finishInFlight(cacheKey, started)) {
+                    waiter.finish(null, error, false);
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Error fetching medicine info", e);
-                callback.onError("Failed to fetch medicine information: " + e.getMessage());
             }
         });
+        return lookup;
     }
-
-    private void tryGenericNameSearch(String medicineName, MedicineInfoCallback callback) {
-        try {
-            String encodedName = URLEncoder.encode(medicineName, "UTF-8");
-            String urlString = BASE_URL + "?search=openfda.generic_name:" + encodedName + 
-                             "&limit=1";
+    
+    /**
+     * Same, cancelled automatically when the owner (an activity or fragment) is destroyed so a
+     * rotation or back press does not leave the request running. Call on the main thread.
+     */
+    public Lookup getMedicineInfo(LifecycleOwner owner, String medicineName, long deadlineMillis,
+                                  MedicineInfoCallback callback) {
+        Lookup lookup = getMedicineInfo(medicineName, deadlineMillis, callback);
+        if (lookup.isDone()) {
+            return lookup;
+        }
+        
+        Lifecycle lifecycle = owner.getLifecycle();
+        LifecycleEventObserver observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                lookup.cancel(false);
+            }
+        };
+        lifecycle.addObserver(observer);
+        // Observers may only be touched on the main thread, and completion happens elsewhere
+        lookup.setOnDone(() -> mainHandler.post(() -> lifecycle.removeObserver(observer)));
+        return lookup;
+    }
+    
+    private List<Lookup> finishInFlight(String cacheKey, InFlight flight) {
+        synchronized (inFlight) {
+            // Abandoned flights were removed already, possibly replaced by a newer one for the key
+            inFlight.remove(cacheKey, flight);
+            List<Lookup> waiters = new ArrayList<>(flight.waiters);
+            flight.waiters.clear();
+            return waiters;
+        }
+    }
+    
+    // The caller gave up; with nobody left waiting, the request stops using threads and sockets
+    private void abandon(Lookup lookup) {
+        HedgedLookup request;
+        synchronized (inFlight) {
+            InFlight flight = inFlight.get(lookup.cacheKey);
+            if (flight == null || !flight.waiters.remove(lookup) || !flight.waiters.isEmpty()) {
+                return;
+            }
+            inFlight.remove(lookup.cacheKey);
+            flight.abandoned = true;
+            request = flight.request;
+        }
+        if (request != null) {
+            Log.d(TAG, "Abandoning lookup for: " + lookup.cacheKey);
+            request.cancel();
+        }
+    }
+    
+    private void fetch(String medicineName, String cacheKey, InFlight flight, MedicineInfoCallback callback) {
+        executor.execute(() -> {
+            synchronized (inFlight) {
+                if (flight.abandoned) {
+                    return;
+                }
+            }
             
-            Log.d(TAG, "Trying generic name search: " + urlString);
-
-            URL url = new URL(urlString);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                MedicineInfo info = parseResponse(response.toString(), medicineName);
-                callback.onSuccess(info);
-            } else {
-                callback.onError("Medicine information not found in FDA database");
+            // An imported bulk index answers without the network, online or not
+            MedicineInfo indexed = labelIndex.lookup(cacheKey);
+            if (indexed != null) {
+                Log.d(TAG, "Label index hit for: " + medicineName);
+                callback.onSuccess(indexed);
+                return;
+            }
+            
+            MedicineInfo stored = cache.getFromDisk(cacheKey, false);
+            if (stored != null) {
+                Log.d(TAG, "Disk cache hit for: " + medicineName);
+                callback.onSuccess(stored);
+                return;
+            }
+            
+            if (!health.allowRequest()) {
+                // openFDA has been failing; answer now instead of waiting out more timeouts
+                Log.d(TAG, "Circuit open, not fetching: " + medicineName + ", " + health);
+                deliverStaleOrError(cacheKey, callback, "FDA database is unavailable, please try again later");
+                return;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error in generic name search", e);
-            callback.onError("Failed to fetch medicine information: " + e.getMessage());
+            
+            Log.d(TAG, "Fetching medicine info for: " + medicineName);
+            // An expired entry is revalidated rather than downloaded again when it has validators
+            HedgedLookup request = new HedgedLookup(medicineName, cacheKey, cache.getValidators(cacheKey), callback);
+            synchronized (inFlight) {
+                if (flight.abandoned) {
+                    return;
+                }
+                flight.request = request;
+            }
+            request.start();
+        });
+    }
+    
+    public interface BatchCallback {
+        // found is keyed by the names as passed in; missing are those the batch could not resolve
+        void onComplete(Map<String, MedicineInfo> found, List<String> missing);
+    }
+    
+    /**
+     * Looks up many drugs with a few OR-combined openFDA searches instead of one round trip
+     * each, calling back once on a background thread. Names answered locally never reach the
+     * network. A label is matched to a name only when one of its brand or generic names equals
+     * it, so a name the single lookup would find by partial match can come back missing.
+     * Batches run one at a time on their own thread, so single lookups never queue behind one.
+     */
+    public void getMedicineInfoBatch(List<String> medicineNames, BatchCallback callback) {
+        batchExecutor.execute(() -> {
+            Map<String, MedicineInfo> found = new LinkedHashMap<>();
+            // Normalized key -> every name a caller used for it
+            Map<String, List<String>> pending = new LinkedHashMap<>();
+            for (String name : medicineNames) {
+                String key = MedicineInfoCache.normalizeKey(name);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                MedicineInfo local = findLocally(key);
+                if (local != null) {
+                    found.put(name, local);
+                    continue;
+                }
+                List<String> names = pending.get(key);
+                if (names == null) {
+                    names = new ArrayList<>();
+                    pending.put(key, names);
+                }
+                names.add(name);
+            }
+            
+            for (List<String> chunk : splitForUrl(new ArrayList<>(pending.keySet()))) {
+                if (!health.allowRequest()) {
+                    Log.d(TAG, "Circuit open, batch lookup stopped: " + health);
+                    break;
+                }
+                fetchBatch(chunk, pending, found);
+            }
+            
+            List<String> missing = new ArrayList<>();
+            for (List<String> names : pending.values()) {
+                missing.addAll(names);
+            }
+            Log.d(TAG, "Batch lookup resolved " + found.size() + " of " + medicineNames.size() + " names");
+            callback.onComplete(found, missing);
+        });
+    }
+    
+    // Label index, then memory and fresh disk cache; does disk I/O
+    private MedicineInfo findLocally(String cacheKey) {
+        MedicineInfo info = labelIndex.lookup(cacheKey);
+        if (info == null) {
+            info = cache.getFromMemory(cacheKey);
+        }
+        if (info == null) {
+            info = cache.getFromDisk(cacheKey, false);
+        }
+        return info;
+    }
+    
+    // Groups keys so each OR-combined search stays under the URL length openFDA accepts
+    private static List<List<String>> splitForUrl(List<String> keys) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int length = 0;
+        for (String key : keys) {
+            int clauseLength = batchClause(key).length() + 1;
+            if (!chunk.isEmpty() && length + clauseLength > MAX_BATCH_SEARCH_LENGTH) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                length = 0;
+            }
+            chunk.add(key);
+            length += clauseLength;
         }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
     }
-
-    private MedicineInfo parseResponse(String jsonResponse, String searchedName) {
-        MedicineInfo info = new MedicineInfo();
-        
+    
+    // Exact-phrase brand or generic match; '+' is openFDA's OR between clauses
+    private static String batchClause(String key) {
+        String phrase;
         try {
-            JSONObject root = new JSONObject(jsonResponse);
-            JSONArray results = root.getJSONArray("results");
-            
-            if (results.length() == 0) {
-                info.drugName = searchedName;
-                info.description = "No detailed information found in FDA database";
-                return info;
+            phrase = URLEncoder.encode("\"" + key.replace("\"", "") + "\"", "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return BRAND_NAME_FIELD + ":" + phrase + "+" + GENERIC_NAME_FIELD + ":" + phrase;
+    }
+    
+    // Pages through one chunk's results, moving every key a label answers from pending to found
+    private void fetchBatch(List<String> chunk, Map<String, List<String>> pending, Map<String, MedicineInfo> found) {
+        StringBuilder search = new StringBuilder();
+        for (String key : chunk) {
+            if (search.length() > 0) {
+                search.append('+');
             }
-
-            JSONObject drug = results.getJSONObject(0);
-
-            // Extract drug name
-            if (drug.has("openfda")) {
-                JSONObject openFda = drug.getJSONObject("openfda");
-                if (openFda.has("brand_name")) {
-                    JSONArray brandNames = openFda.getJSONArray("brand_name");
-                    if (brandNames.length() > 0) {
-                        info.drugName = brandNames.getString(0);
-                    }
+            search.append(batchClause(key));
+        }
+        
+        for (int page = 0; page < MAX_BATCH_PAGES; page++) {
+            String urlString = baseUrl + "?search=" + search + "&limit=" + BATCH_PAGE_SIZE
+                    + "&skip=" + (page * BATCH_PAGE_SIZE);
+            long started = System.nanoTime();
+            int labels;
+            try (OpenFdaClient.Response response = client.get(urlString, null, new OpenFdaClient.Call())) {
+                Log.d(TAG, "Batch page " + page + " response code: " + response.code);
+                if (response.code == HTTP_TOO_MANY_REQUESTS || response.code >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                    health.recordFailure(elapsedMillis(started));
+                    return;
                 }
-                if (info.drugName.isEmpty() && openFda.has("generic_name")) {
-                    JSONArray genericNames = openFda.getJSONArray("generic_name");
-                    if (genericNames.length() > 0) {
-                        info.drugName = genericNames.getString(0);
-                    }
+                health.recordSuccess(elapsedMillis(started));
+                // 404: none of the names in this chunk has a label
+                if (response.code != HttpURLConnection.HTTP_OK) {
+                    return;
                 }
-                if (openFda.has("manufacturer_name")) {
-                    JSONArray manufacturers = openFda.getJSONArray("manufacturer_name");
-                    if (manufacturers.length() > 0) {
-                        info.manufacturer = manufacturers.getString(0);
+                
+                Reader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                labels = labelParser.forEachResult(reader, (info, labelNames) -> {
+                    for (String labelName : labelNames) {
+                        String key = MedicineInfoCache.normalizeKey(labelName);
+                        List<String> requested = pending.remove(key);
+                        if (requested == null) {
+                            continue;
+                        }
+                        if (info.drugName.isEmpty()) {
+                            info.drugName = requested.get(0);
+                        }
+                        cacheResult(key, info, null);
+                        for (String name : requested) {
+                            found.put(name, info);
+                        }
                     }
-                }
+                });
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error in batch lookup", e);
+                health.recordFailure(elapsedMillis(started));
+                return;
             }
-
-            if (info.drugName.isEmpty()) {
-                info.drugName = searchedName;
+            
+            if (labels < BATCH_PAGE_SIZE || !containsAny(pending, chunk)) {
+                return;
             }
-
-            // Extract active ingredient
-            if (drug.has("active_ingredient")) {
-                JSONArray activeIngredients = drug.getJSONArray("active_ingredient");
-                if (activeIngredients.length() > 0) {
-                    info.activeIngredient = activeIngredients.getString(0);
+        }
+    }
+    
+    private static boolean containsAny(Map<String, List<String>> pending, List<String> keys) {
+        for (String key : keys) {
+            if (pending.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void cacheResult(String cacheKey, MedicineInfo info, MedicineInfoCache.Validators validators) {
+        if (!PARSE_ERROR_DESCRIPTION.equals(info.description)) {
+            cache.put(cacheKey, info, validators);
+        }
+    }
+    
+    // Offline or failing: an expired cached copy beats an error
+    private void deliverStaleOrError(String cacheKey, MedicineInfoCallback callback, String error) {
+        MedicineInfo stale = cache.getFromDisk(cacheKey, true);
+        if (stale != null) {
+            Log.d(TAG, "Serving expired cache entry for: " + cacheKey);
+            callback.onSuccess(stale);
+        } else {
+            callback.onError(error);
+        }
+    }
+    
+    /**
+     * Brand-name and generic-name searches for one medicine. The brand query runs first and the
+     * generic query joins after the hedging delay, or straight away if the brand query fails;
+     * the first 200 (or 304 for a revalidated entry) wins and the other request is cancelled.
+     */
+    private class HedgedLookup {
+        private final String medicineName;
+        private final String cacheKey;
+        private final MedicineInfoCallback callback;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final MedicineInfoCache.Validators validators;
+        private final List<OpenFdaClient.Call> calls = new ArrayList<>();
+        private volatile String lastError;
+        private ScheduledFuture<?> hedge;
+        private final List<ScheduledFuture<?>> retries = new ArrayList<>();
+        
+        HedgedLookup(String medicineName, String cacheKey, MedicineInfoCache.Validators validators,
+                     MedicineInfoCallback callback) {
+            this.medicineName = medicineName;
+            this.cacheKey = cacheKey;
+            this.validators = validators;
+            this.callback = callback;
+        }
+        
+        // Runs on an executor thread, which performs the brand query itself
+        void start() {
+            synchronized (this) {
+                // Abandoned before it got going
+                if (finished.get()) {
+                    return;
                 }
+                hedge = scheduler.schedule(() -> executor.execute(() -> query(GENERIC_NAME_FIELD, 0)),
+                        hedgeDelayMillis, TimeUnit.MILLISECONDS);
             }
-
-            // Extract description/purpose
-            if (drug.has("purpose")) {
-                JSONArray purposes = drug.getJSONArray("purpose");
-                if (purposes.length() > 0) {
-                    info.description = purposes.getString(0);
+            query(BRAND_NAME_FIELD, 0);
+        }
+        
+        private void query(String field, int attempt) {
+            if (finished.get()) {
+                return;
+            }
+            
+            OpenFdaClient.Call call = new OpenFdaClient.Call();
+            if (!register(call)) {
+                return;
+            }
+            // Reported after the response is closed, since failing may start the other query inline
+            String failure = null;
+            boolean retryable = false;
+            long started = System.nanoTime();
+            try {
+                String encodedName = URLEncoder.encode(medicineName, "UTF-8");
+                String urlString = baseUrl + "?search=" + field + ":" + encodedName + "&limit=1";
+                Log.d(TAG, "API URL: " + urlString);
+                
+                try (OpenFdaClient.Response response = client.get(urlString, validators, call)) {
+                    Log.d(TAG, field + " response code: " + response.code);
+                    
+                    boolean serverError = response.code == HTTP_TOO_MANY_REQUESTS
+                            || response.code >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+                    // Any other answer, 404 included, shows the server is healthy
+                    if (serverError) {
+                        health.recordFailure(elapsedMillis(started));
+                    } else {
+                        health.recordSuccess(elapsedMillis(started));
+                    }
+                    
+                    if (serverError) {
+                        retryable = true;
+                        failure = "FDA database is unavailable (HTTP " + response.code + ")";
+                    } else if (response.isNotModified()) {
+                        // Our expired copy is still current; only the headers crossed the network
+                        MedicineInfo info = cache.refresh(cacheKey);
+                        if (info == null) {
+                            failure = "Medicine information not found in FDA database";
+                        } else if (finished.compareAndSet(false, true)) {
+                            cancelOthers(call);
+                            Log.d(TAG, "Revalidated cache entry for: " + medicineName);
+                            callback.onSuccess(info);
+                        }
+                    } else if (response.code == HttpURLConnection.HTTP_OK) {
+                        MedicineInfo info = parseResponse(response.getBody(), medicineName);
+                        if (finished.compareAndSet(false, true)) {
+                            cancelOthers(call);
+                            cacheResult(cacheKey, info, new MedicineInfoCache.Validators(urlString, response.etag, response.lastModified));
+                            callback.onSuccess(info);
+                        }
+                    } else {
+                        failure = "Medicine information not found in FDA database";
+                    }
                 }
-            } else if (drug.has("indications_and_usage")) {
-                JSONArray indications = drug.getJSONArray("indications_and_usage");
-                if (indications.length() > 0) {
-                    info.description = indications.getString(0);
+            } catch (Exception e) {
+                // The loser is cancelled once the other query wins; that failure is expected
+                if (!finished.get()) {
+                    Log.e(TAG, "Error in " + field + " search", e);
+                    health.recordFailure(elapsedMillis(started));
+                    retryable = true;
+                    failure = "Failed to fetch medicine information: " + e.getMessage();
                 }
             }
-
-            // Extract dosage and administration
-            if (drug.has("dosage_and_administration")) {
-                JSONArray dosage = drug.getJSONArray("dosage_and_administration");
-                if (dosage.length() > 0) {
-                    info.dosageAndAdministration = dosage.getString(0);
+            if (failure != null) {
+                fail(field, attempt, failure, retryable);
+            }
+        }
+        
+        private synchronized boolean register(OpenFdaClient.Call call) {
+            if (finished.get()) {
+                return false;
+            }
+            calls.add(call);
+            return true;
+        }
+        
+        // Every caller gave up; nothing is delivered or cached
+        void cancel() {
+            if (finished.compareAndSet(false, true)) {
+                cancelOthers(null);
+            }
+        }
+        
+        private synchronized void cancelOthers(OpenFdaClient.Call winner) {
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+            for (ScheduledFuture<?> retry : retries) {
+                retry.cancel(false);
+            }
+            for (OpenFdaClient.Call call : calls) {
+                if (call != winner) {
+                    call.cancel();
                 }
             }
-
-            // Extract contraindications
-            if (drug.has("contraindications")) {
-                JSONArray contraindications = drug.getJSONArray("contraindications");
-                if (contraindications.length() > 0) {
-                    info.contraindications = contraindications.getString(0);
+        }
+        
+        private void fail(String field, int attempt, String error, boolean retryable) {
+            boolean retrying = retryable && attempt + 1 < MAX_ATTEMPTS && scheduleRetry(field, attempt);
+            if (!retrying) {
+                lastError = error;
+                if (failures.incrementAndGet() == 2) {
+                    if (finished.compareAndSet(false, true)) {
+                        deliverStaleOrError(cacheKey, callback, lastError);
+                    }
+                    return;
                 }
             }
-
-            // Extract adverse reactions (side effects)
-            if (drug.has("adverse_reactions")) {
-                JSONArray adverseReactions = drug.getJSONArray("adverse_reactions");
-                if (adverseReactions.length() > 0) {
-                    info.adverseReactions = adverseReactions.getString(0);
+            
+            if (BRAND_NAME_FIELD.equals(field)) {
+                boolean pending;
+                synchronized (this) {
+                    pending = hedge.cancel(false);
+                }
+                // No point waiting out the hedging delay once the brand query has failed
+                if (pending) {
+                    query(GENERIC_NAME_FIELD, 0);
                 }
             }
-
-            // Extract warnings
-            if (drug.has("warnings")) {
-                JSONArray warnings = drug.getJSONArray("warnings");
-                if (warnings.length() > 0) {
-                    info.warnings = warnings.getString(0);
+        }
+        
+        // Retries only while the shared budget allows, after a jittered backoff
+        private boolean scheduleRetry(String field, int attempt) {
+            synchronized (this) {
+                if (finished.get() || !health.tryAcquireRetry()) {
+                    return false;
                 }
+                long delay = health.backoffMillis(attempt);
+                Log.d(TAG, "Retrying " + field + " search in " + delay + " ms");
+                retries.add(scheduler.schedule(() -> executor.execute(() -> query(field, attempt + 1)),
+                        delay, TimeUnit.MILLISECONDS));
+                return true;
             }
-
-            Log.d(TAG, "Successfully parsed medicine info for: " + info.drugName);
-
-        } catch (Exception e) {
+        }
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+    
+    private MedicineInfo parseResponse(InputStream stream, String searchedName) throws IOException {
+        MedicineInfo info;
+        // Not closed here: the response drains and closes the stream so the connection can be reused
+        Reader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        try {
+            info = labelParser.parseFirstResult(reader);
+        } catch (MalformedJsonException | IllegalStateException e) {
+            // The body arrived but is not the shape we expect; a dropped connection still throws
             Log.e(TAG, "Error parsing medicine info response", e);
+            info = new MedicineInfo();
             info.drugName = searchedName;
-            info.description = "Error parsing medicine information";
+            info.description = PARSE_ERROR_DESCRIPTION;
+            return info;
         }
-
+        
+        if (info == null) {
+            info = new MedicineInfo();
+            info.drugName = searchedName;
+            info.description = "No detailed information found in FDA database";
+            return info;
+        }
+        
+        if (info.drugName.isEmpty()) {
+            info.drugName = searchedName;
+        }
+        Log.d(TAG, "Successfully parsed medicine info for: " + info.drugName);
         return info;
     }
 }
\ No newline at end of file
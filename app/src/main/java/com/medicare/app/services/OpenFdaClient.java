@@ -0,0 +1,214 @@
+package com.medicare.app.services;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Minimal HTTP layer for openFDA GETs. Asks for gzip, sends cached validators so unchanged labels
+ * come back as an empty 304, and drains each body on close so HttpURLConnection can hand the
+ * keep-alive socket to the next lookup instead of doing a new TLS handshake.
+ */
+public class OpenFdaClient {
+    
+    private static final String TAG = "OpenFdaClient";
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    
+    // One request in flight; cancel() may be called from any thread
+    public static class Call {
+        private volatile HttpURLConnection connection;
+        private volatile boolean cancelled;
+        
+        public void cancel() {
+            cancelled = true;
+            HttpURLConnection current = connection;
+            if (current != null) {
+                current.disconnect();
+            }
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+    
+    public static class Response implements Closeable {
+        public final int code;
+        public final String etag;
+        public final String lastModified;
+        private final HttpURLConnection connection;
+        private final InputStream rawBody;
+        private final InputStream body;
+        
+        Response(HttpURLConnection connection, int code, InputStream rawBody, InputStream body) {
+            this.connection = connection;
+            this.code = code;
+            this.etag = connection.getHeaderField("ETag");
+            this.lastModified = connection.getHeaderField("Last-Modified");
+            this.rawBody = rawBody;
+            this.body = body;
+        }
+        
+        public boolean isNotModified() {
+            return code == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+        
+        // Decompressed body, or null for responses without one (304, errors with no stream)
+        public InputStream getBody() {
+            return body;
+        }
+        
+        /**
+         * Reads off whatever the caller left unread so the socket returns to the pool; a large
+         * remainder is cheaper to drop along with the connection.
+         */
+        @Override
+        public void close() {
+            if (rawBody == null) {
+                return;
+            }
+            try {
+                byte[] buffer = new byte[8192];
+                int drained = 0;
+                int read;
+                while (drained < MAX_DRAIN_BYTES && (read = rawBody.read(buffer)) != -1) {
+                    drained += read;
+                }
+                if (drained >= MAX_DRAIN_BYTES) {
+                    connection.disconnect();
+                }
+                rawBody.close();
+            } catch (IOException e) {
+                connection.disconnect();
+            }
+        }
+    }
+    
+    /**
+     * Sends a GET, made conditional when validators from an earlier response are given. The
+     * caller must close the response. Throws IOException on network failure or cancellation.
+     */
+    public Response get(String urlString, MedicineInfoCache.Validators validators, Call call) throws IOException {
+        if (call.isCancelled()) {
+            throw new IOException("Canceled");
+        }
+        
+        HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
+        call.connection = connection;
+        // cancel() may have run before the connection was published
+        if (call.isCancelled()) {
+            connection.disconnect();
+            throw new IOException("Canceled");
+        }
+        
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (validators != null && urlString.equals(validators.url)) {
+            if (validators.etag != null) {
+                connection.setRequestProperty("If-None-Match", validators.etag);
+            }
+            if (validators.lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", validators.lastModified);
+            }
+        }
+        
+        try {
+            int code = connection.getResponseCode();
+            InputStream rawBody = code < HttpURLConnection.HTTP_BAD_REQUEST
+                    ? connection.getInputStream() : connection.getErrorStream();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED || rawBody == null) {
+                return new Response(connection, code, rawBody, null);
+            }
+            
+            long contentLength = parseContentLength(connection.getHeaderField("Content-Length"));
+            if (contentLength >= 0) {
+                rawBody = new LengthCheckedStream(rawBody, contentLength);
+            }
+            InputStream body = "gzip".equalsIgnoreCase(connection.getContentEncoding())
+                    ? new GZIPInputStream(rawBody) : rawBody;
+            return new Response(connection, code, rawBody, body);
+        } catch (IOException e) {
+            connection.disconnect();
+            if (call.isCancelled()) {
+                Log.d(TAG, "Request canceled: " + urlString);
+            }
+            throw e;
+        }
+    }
+    
+    private static long parseContentLength(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Fails a body that ends before its Content-Length. Some HttpURLConnection implementations
+     * report a connection dropped mid-body as a normal end of stream, and a label cut short
+     * must not be parsed or cached as if it were whole.
+     */
+    private static class LengthCheckedStream extends FilterInputStream {
+        private long remaining;
+        
+        LengthCheckedStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                checkComplete();
+            } else {
+                remaining--;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                checkComplete();
+            } else {
+                remaining -= read;
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            remaining -= skipped;
+            return skipped;
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+        
+        private void checkComplete() throws IOException {
+            if (remaining > 0) {
+                throw new EOFException("Body ended " + remaining + " bytes short of Content-Length");
+            }
+        }
+    }
+}
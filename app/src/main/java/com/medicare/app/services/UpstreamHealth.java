@@ -0,0 +1,180 @@
+package com.medicare.app.services;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Tracks how openFDA has been answering: a circuit breaker over the last WINDOW_SIZE requests,
+ * a retry budget that only grows with successful traffic, jittered exponential backoff, and
+ * success/failure counts with recent latencies. Thread-safe.
+ */
+public class UpstreamHealth {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private static final int WINDOW_SIZE = 20;
+    // Trips once at least this many of the last WINDOW_SIZE requests failed
+    private static final int FAILURE_THRESHOLD = 10;
+    private static final long OPEN_MILLIS = 30 * 1000;
+    // Each success earns a tenth of a retry, so retries stay a small fraction of traffic
+    private static final double RETRY_RATIO = 0.1;
+    private static final double MAX_RETRY_TOKENS = 10;
+    private static final long BACKOFF_BASE_MILLIS = 250;
+    private static final long BACKOFF_CAP_MILLIS = 4000;
+    private static final int LATENCY_SAMPLES = 64;
+    
+    private final Random random = new Random();
+    
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+    // Ring of recent outcomes, true for a failure
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    private int windowCount;
+    private int windowNext;
+    private int windowFailures;
+    
+    private double retryTokens = MAX_RETRY_TOKENS;
+    
+    private long successes;
+    private long failures;
+    private long rejected;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int latencyNext;
+    
+    /**
+     * Whether a request may go out now. While open everything is refused until OPEN_MILLIS
+     * have passed; then a single probe is let through and its outcome decides the state.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case OPEN:
+                if (now() - openedAt < OPEN_MILLIS) {
+                    rejected++;
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                // From here on the probe's start time, so an abandoned probe cannot wedge the breaker
+                openedAt = now();
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (probeInFlight && now() - openedAt < OPEN_MILLIS) {
+                    rejected++;
+                    return false;
+                }
+                openedAt = now();
+                probeInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+    
+    // A response arrived, including a 404: the server is up even if it did not know the drug
+    public synchronized void recordSuccess(long latencyMillis) {
+        successes++;
+        recordLatency(latencyMillis);
+        retryTokens = Math.min(MAX_RETRY_TOKENS, retryTokens + RETRY_RATIO);
+        recordOutcome(false);
+        if (state == State.HALF_OPEN) {
+            close();
+        }
+    }
+    
+    // Network error, timeout, 429 or 5xx
+    public synchronized void recordFailure(long latencyMillis) {
+        failures++;
+        recordLatency(latencyMillis);
+        recordOutcome(true);
+        if (state == State.HALF_OPEN || (state == State.CLOSED && windowFailures >= FAILURE_THRESHOLD)) {
+            state = State.OPEN;
+            openedAt = now();
+            probeInFlight = false;
+        }
+    }
+    
+    // Takes a retry from the budget; false once retries would add load to a struggling server
+    public synchronized boolean tryAcquireRetry() {
+        if (state != State.CLOSED || retryTokens < 1) {
+            return false;
+        }
+        retryTokens -= 1;
+        return true;
+    }
+    
+    // Full jitter: uniform in [0, min(cap, base * 2^attempt)] so clients do not retry in step
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(BACKOFF_CAP_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt, 16));
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    public synchronized long getSuccessCount() { return successes; }
+    public synchronized long getFailureCount() { return failures; }
+    public synchronized long getRejectedCount() { return rejected; }
+    
+    // Latency percentile over the recent samples, 0 before any request finished
+    public synchronized long getLatencyPercentile(double percentile) {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(latencyCount - 1, index))];
+    }
+    
+    @Override
+    public synchronized String toString() {
+        long total = successes + failures;
+        double failureRate = total == 0 ? 0 : 100.0 * failures / total;
+        return String.format(Locale.US,
+                "UpstreamHealth[state=%s, ok=%d, failed=%d (%.1f%%), rejected=%d, p50=%d ms, p95=%d ms, retry tokens=%.1f]",
+                state, successes, failures, failureRate, rejected,
+                getLatencyPercentile(50), getLatencyPercentile(95), retryTokens);
+    }
+    
+    private void close() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        Arrays.fill(window, false);
+        windowCount = 0;
+        windowNext = 0;
+        windowFailures = 0;
+    }
+    
+    private void recordOutcome(boolean failed) {
+        if (windowCount == WINDOW_SIZE) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % WINDOW_SIZE;
+    }
+    
+    private void recordLatency(long latencyMillis) {
+        latencies[latencyNext] = latencyMillis;
+        latencyNext = (latencyNext + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) {
+            latencyCount++;
+        }
+    }
+    
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+}
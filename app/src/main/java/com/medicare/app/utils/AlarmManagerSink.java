@@ -0,0 +1,53 @@
+package com.medicare.app.utils;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import com.medicare.app.receivers.MedicineReminderReceiver;
+
+public class AlarmManagerSink implements AlarmSink {
+
+    private final Context context;
+    private final AlarmManager alarmManager;
+
+    public AlarmManagerSink(Context context) {
+        this.context = context.getApplicationContext();
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+    }
+
+    @Override
+    public void setAlarm(ReminderSnapshot.Entry entry, long triggerAt) {
+        Intent intent = new Intent(context, MedicineReminderReceiver.class);
+        ReminderNotifier.putDoseExtras(intent, entry, triggerAt);
+
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(
+            context,
+            entry.getRequestCode(),
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        } else {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        }
+    }
+
+    @Override
+    public void cancelAlarm(int requestCode) {
+        Intent intent = new Intent(context, MedicineReminderReceiver.class);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(
+            context,
+            requestCode,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        alarmManager.cancel(pendingIntent);
+        pendingIntent.cancel();
+    }
+}
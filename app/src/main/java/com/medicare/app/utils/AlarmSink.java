@@ -0,0 +1,9 @@
+package com.medicare.app.utils;
+
+// Where ReminderScheduler sends armed reminders; AlarmManagerSink on device, a recorder in simulations
+public interface AlarmSink {
+
+    void setAlarm(ReminderSnapshot.Entry entry, long triggerAt);
+
+    void cancelAlarm(int requestCode);
+}
@@ -0,0 +1,265 @@
+package com.medicare.app.utils;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.medicare.app.database.DatabaseHelper;
+import com.medicare.app.receivers.MedicineReminderReceiver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Re-notifies doses nobody acknowledged, at a fixed interval and with rising urgency, until the
+ * configured limit is hit and the dose is logged as missed. All pending escalations share one
+ * alarm set for the earliest of them.
+ */
+public class EscalationManager {
+
+    private static final String TAG = "EscalationManager";
+    private static final String FILE_NAME = "reminder_escalations.bin";
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Object lock = new Object();
+
+    private static class Escalation {
+        // nextTriggerAt holds the time the dose was originally due
+        ReminderSnapshot.Entry entry;
+        int level;
+        long nextAt;
+    }
+
+    // Starts (or restarts) escalation for freshly delivered doses
+    public static void track(Context context, List<ReminderSnapshot.Entry> delivered, long deliveredAt) {
+        if (delivered.isEmpty() || ReminderSettings.getMaxEscalations(context) <= 0) {
+            return;
+        }
+
+        long nextAt = deliveredAt + ReminderSettings.getEscalationIntervalMillis(context);
+        synchronized (lock) {
+            List<Escalation> escalations = read(context);
+            for (ReminderSnapshot.Entry entry : delivered) {
+                removeDose(escalations, entry.medicineId, entry.timeIndex);
+                Escalation escalation = new Escalation();
+                escalation.entry = entry.copy();
+                escalation.nextAt = nextAt;
+                escalations.add(escalation);
+            }
+            write(context, escalations);
+        }
+        updateAlarm(context);
+    }
+
+    // Taken, skipped or snoozed: the dose no longer needs chasing
+    public static void acknowledge(Context context, long medicineId, int timeIndex) {
+        boolean removed;
+        synchronized (lock) {
+            List<Escalation> escalations = read(context);
+            removed = removeDose(escalations, medicineId, timeIndex);
+            if (removed) {
+                write(context, escalations);
+            }
+        }
+        if (removed) {
+            updateAlarm(context);
+        }
+    }
+
+    public static void cancelMedicine(Context context, long medicineId) {
+        boolean removed = false;
+        synchronized (lock) {
+            List<Escalation> escalations = read(context);
+            Iterator<Escalation> iterator = escalations.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().entry.medicineId == medicineId) {
+                    iterator.remove();
+                    removed = true;
+                }
+            }
+            if (removed) {
+                write(context, escalations);
+            }
+        }
+        if (removed) {
+            updateAlarm(context);
+        }
+    }
+
+    /**
+     * Re-notifies every escalation that is due and marks the ones past the limit as missed.
+     * Runs on the notifier thread from any reminder wakeup, so it rarely needs its own alarm.
+     * Returns the number of doses handled.
+     */
+    public static int escalateDue(Context context) {
+        long now = ReminderScheduler.getClock().currentTimeMillis();
+        int maxLevel = ReminderSettings.getMaxEscalations(context);
+        long interval = ReminderSettings.getEscalationIntervalMillis(context);
+        List<Escalation> escalated = new ArrayList<>();
+        List<Escalation> missed = new ArrayList<>();
+
+        synchronized (lock) {
+            List<Escalation> escalations = read(context);
+            Iterator<Escalation> iterator = escalations.iterator();
+            while (iterator.hasNext()) {
+                Escalation escalation = iterator.next();
+                if (escalation.nextAt > now) {
+                    continue;
+                }
+                if (escalation.level >= maxLevel) {
+                    missed.add(escalation);
+                    iterator.remove();
+                } else {
+                    escalation.level++;
+                    escalation.nextAt = now + interval;
+                    escalated.add(escalation);
+                }
+            }
+            if (escalated.isEmpty() && missed.isEmpty()) {
+                return 0;
+            }
+            write(context, escalations);
+        }
+
+        for (Escalation escalation : escalated) {
+            ReminderNotifier.postEscalation(context, escalation.entry, escalation.level, maxLevel);
+        }
+        if (!missed.isEmpty()) {
+            DatabaseHelper databaseHelper = new DatabaseHelper(context);
+            for (Escalation escalation : missed) {
+                ReminderSnapshot.Entry entry = escalation.entry;
+                databaseHelper.insertDoseOutcome(entry.medicineId, entry.userId, entry.timeIndex, entry.nextTriggerAt,
+                        DatabaseHelper.OUTCOME_MISSED);
+                ReminderNotifier.dismissDose(context, entry);
+                Log.d(TAG, entry.medicineName + " marked missed");
+            }
+            databaseHelper.close();
+        }
+        updateAlarm(context);
+        return escalated.size() + missed.size();
+    }
+
+    // One alarm for the earliest pending escalation; inexact is fine since this is a follow-up
+    public static void updateAlarm(Context context) {
+        long earliest = Long.MAX_VALUE;
+        synchronized (lock) {
+            for (Escalation escalation : read(context)) {
+                earliest = Math.min(earliest, escalation.nextAt);
+            }
+        }
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(context, MedicineReminderReceiver.class).setAction(MedicineReminderReceiver.ACTION_ESCALATE);
+        if (earliest == Long.MAX_VALUE) {
+            PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE);
+            if (pendingIntent != null) {
+                alarmManager.cancel(pendingIntent);
+                pendingIntent.cancel();
+            }
+            return;
+        }
+
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, earliest, pendingIntent);
+    }
+
+    private static boolean removeDose(List<Escalation> escalations, long medicineId, int timeIndex) {
+        Iterator<Escalation> iterator = escalations.iterator();
+        while (iterator.hasNext()) {
+            ReminderSnapshot.Entry entry = iterator.next().entry;
+            if (entry.medicineId == medicineId && entry.timeIndex == timeIndex) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    private static List<Escalation> read(Context context) {
+        List<Escalation> escalations = new ArrayList<>();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(getFile(context).openRead()));
+            if (in.readInt() != FORMAT_VERSION) {
+                return escalations;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                ReminderSnapshot.Entry entry = new ReminderSnapshot.Entry();
+                entry.medicineId = in.readLong();
+                entry.userId = in.readLong();
+                entry.timeIndex = in.readShort();
+                entry.minuteOfDay = in.readShort();
+                entry.medicineName = in.readUTF();
+                entry.dosage = in.readUTF();
+                entry.nextTriggerAt = in.readLong();
+
+                Escalation escalation = new Escalation();
+                escalation.entry = entry;
+                escalation.level = in.readByte();
+                escalation.nextAt = in.readLong();
+                escalations.add(escalation);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing escalating yet
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading escalations", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return escalations;
+    }
+
+    private static void write(Context context, List<Escalation> escalations) {
+        AtomicFile file = getFile(context);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(escalations.size());
+            for (Escalation escalation : escalations) {
+                ReminderSnapshot.Entry entry = escalation.entry;
+                out.writeLong(entry.medicineId);
+                out.writeLong(entry.userId);
+                out.writeShort(entry.timeIndex);
+                out.writeShort(entry.minuteOfDay);
+                out.writeUTF(entry.medicineName != null ? entry.medicineName : "");
+                out.writeUTF(entry.dosage != null ? entry.dosage : "");
+                out.writeLong(entry.nextTriggerAt);
+                out.writeByte(escalation.level);
+                out.writeLong(escalation.nextAt);
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing escalations", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.medicare.app.utils;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * On-device histogram of how late reminders are delivered compared to their intended trigger
+ * time, bucketed per day so doze and OEM delays can be quantified.
+ */
+public class LatenessHistogram {
+
+    private static final String TAG = "LatenessHistogram";
+    private static final String FILE_NAME = "reminder_lateness.bin";
+    private static final String EXPORT_FILE_NAME = "reminder_lateness.csv";
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_DAYS = 30;
+
+    // Upper bound of each bucket; percentiles are reported as the bound of the bucket they fall in
+    private static final long[] BUCKET_UPPER_MILLIS = {
+            1000, 5000, 15000, 30000, 60000, 2 * 60000, 5 * 60000, 10 * 60000,
+            15 * 60000, 30 * 60000, 60 * 60000, 2 * 3600000, Long.MAX_VALUE
+    };
+
+    private static final Object lock = new Object();
+
+    public static class DaySummary {
+        public int day; // yyyyMMdd
+        public int count;
+        public long p50Millis;
+        public long p90Millis;
+        public long p99Millis;
+    }
+
+    // Records every dose of one wakeup against its deliverAt, with a single read and write of the file
+    public static void record(Context context, List<ReminderSnapshot.Entry> delivered, long deliveredAt) {
+        int recorded = 0;
+        long maxLateness = 0;
+        synchronized (lock) {
+            TreeMap<Integer, int[]> days = null;
+            for (ReminderSnapshot.Entry entry : delivered) {
+                if (entry.deliverAt <= 0) {
+                    continue;
+                }
+                if (days == null) {
+                    days = read(context);
+                }
+                long lateness = Math.max(0, deliveredAt - entry.deliverAt);
+                int bucket = 0;
+                while (lateness > BUCKET_UPPER_MILLIS[bucket]) {
+                    bucket++;
+                }
+
+                int day = dayKey(entry.deliverAt);
+                int[] counts = days.get(day);
+                if (counts == null) {
+                    counts = new int[BUCKET_UPPER_MILLIS.length];
+                    days.put(day, counts);
+                }
+                counts[bucket]++;
+                recorded++;
+                maxLateness = Math.max(maxLateness, lateness);
+            }
+            if (days == null) {
+                return;
+            }
+            while (days.size() > MAX_DAYS) {
+                days.remove(days.firstKey());
+            }
+            write(context, days);
+        }
+        Log.d(TAG, recorded + " reminders delivered up to " + maxLateness + " ms after their trigger time");
+    }
+
+    public static List<DaySummary> getDailySummaries(Context context) {
+        TreeMap<Integer, int[]> days;
+        synchronized (lock) {
+            days = read(context);
+        }
+
+        List<DaySummary> summaries = new ArrayList<>(days.size());
+        for (Integer day : days.descendingKeySet()) {
+            int[] counts = days.get(day);
+            DaySummary summary = new DaySummary();
+            summary.day = day;
+            for (int count : counts) {
+                summary.count += count;
+            }
+            summary.p50Millis = percentile(counts, summary.count, 0.50);
+            summary.p90Millis = percentile(counts, summary.count, 0.90);
+            summary.p99Millis = percentile(counts, summary.count, 0.99);
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    // Writes the per-day buckets as CSV into the app's external files directory and returns it
+    public static File exportCsv(Context context) throws IOException {
+        TreeMap<Integer, int[]> days;
+        synchronized (lock) {
+            days = read(context);
+        }
+
+        File directory = context.getExternalFilesDir(null);
+        File file = new File(directory != null ? directory : context.getFilesDir(), EXPORT_FILE_NAME);
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("day");
+            for (long upper : BUCKET_UPPER_MILLIS) {
+                writer.write(upper == Long.MAX_VALUE ? ",le_inf" : ",le_" + upper + "ms");
+            }
+            writer.write("\n");
+            for (Integer day : days.keySet()) {
+                writer.write(String.valueOf(day));
+                for (int count : days.get(day)) {
+                    writer.write("," + count);
+                }
+                writer.write("\n");
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    public static String formatSummaries(List<DaySummary> summaries) {
+        if (summaries.isEmpty()) {
+            return "No reminders delivered yet.";
+        }
+        StringBuilder text = new StringBuilder();
+        for (DaySummary summary : summaries) {
+            text.append(String.format(Locale.US, "%04d-%02d-%02d  n=%d  p50 %s  p90 %s  p99 %s\n",
+                    summary.day / 10000, summary.day / 100 % 100, summary.day % 100, summary.count,
+                    formatBound(summary.p50Millis), formatBound(summary.p90Millis), formatBound(summary.p99Millis)));
+        }
+        return text.toString();
+    }
+
+    private static String formatBound(long millis) {
+        if (millis == Long.MAX_VALUE) {
+            return ">2h";
+        }
+        return millis < 60000 ? "≤" + millis / 1000 + "s" : "≤" + millis / 60000 + "m";
+    }
+
+    private static long percentile(int[] counts, int total, double fraction) {
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BUCKET_UPPER_MILLIS[i];
+            }
+        }
+        return BUCKET_UPPER_MILLIS[counts.length - 1];
+    }
+
+    private static int dayKey(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100 + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    private static TreeMap<Integer, int[]> read(Context context) {
+        TreeMap<Integer, int[]> days = new TreeMap<>();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(getFile(context).openRead()));
+            if (in.readInt() != FORMAT_VERSION || in.readInt() != BUCKET_UPPER_MILLIS.length) {
+                return days;
+            }
+            int dayCount = in.readInt();
+            for (int i = 0; i < dayCount; i++) {
+                int day = in.readInt();
+                int[] counts = new int[BUCKET_UPPER_MILLIS.length];
+                for (int b = 0; b < counts.length; b++) {
+                    counts[b] = in.readInt();
+                }
+                days.put(day, counts);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing recorded yet
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading lateness histogram", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return days;
+    }
+
+    private static void write(Context context, TreeMap<Integer, int[]> days) {
+        AtomicFile file = getFile(context);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(BUCKET_UPPER_MILLIS.length);
+            out.writeInt(days.size());
+            for (Integer day : days.keySet()) {
+                out.writeInt(day);
+                for (int count : days.get(day)) {
+                    out.writeInt(count);
+                }
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing lateness histogram", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+}
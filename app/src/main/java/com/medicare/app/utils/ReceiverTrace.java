@@ -0,0 +1,39 @@
+package com.medicare.app.utils;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Trace sections plus timing for broadcast receiver work, so receiver cost shows up both in
+ * system traces and in logcat. A section must be ended on the thread that began it.
+ */
+public class ReceiverTrace {
+
+    private static final String TAG = "ReceiverTrace";
+
+    // onReceive runs on the main thread, where it competes with app start and UI
+    public static final long ON_RECEIVE_BUDGET_MILLIS = 10;
+    // Work handed off with goAsync has to finish well inside the broadcast timeout
+    public static final long ASYNC_BUDGET_MILLIS = 2000;
+
+    public static long begin(String section) {
+        Trace.beginSection(section);
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    // Ends the section and logs its duration, as a warning when it ran over budget. Returns microseconds.
+    public static long end(String section, long startNanos, long budgetMillis) {
+        Trace.endSection();
+        long elapsedMicros = (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000;
+        String message = String.format(Locale.US, "%s took %.2f ms (budget %d ms)", section, elapsedMicros / 1000.0, budgetMillis);
+        if (elapsedMicros > budgetMillis * 1000) {
+            Log.w(TAG, message);
+        } else {
+            Log.d(TAG, message);
+        }
+        return elapsedMicros;
+    }
+}
@@ -0,0 +1,23 @@
+package com.medicare.app.utils;
+
+import java.util.TimeZone;
+
+// Source of "now" for reminder scheduling, replaceable so schedules can be replayed off-device
+public interface ReminderClock {
+
+    long currentTimeMillis();
+
+    TimeZone getTimeZone();
+
+    ReminderClock SYSTEM = new ReminderClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public TimeZone getTimeZone() {
+            return TimeZone.getDefault();
+        }
+    };
+}
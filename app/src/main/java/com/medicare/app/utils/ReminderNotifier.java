@@ -0,0 +1,322 @@
+package com.medicare.app.utils;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+import android.text.format.DateFormat;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import com.medicare.app.DashboardActivity;
+import com.medicare.app.R;
+import com.medicare.app.receivers.ReminderActionReceiver;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Posts reminder notifications: one per dose slot with a stable ID, bundled into a group whose
+ * summary is rebuilt once per burst. All work runs on a single background thread.
+ */
+public class ReminderNotifier {
+
+    private static final String TAG = "ReminderNotifier";
+
+    public static final String CHANNEL_ID = "MEDICINE_REMINDERS";
+    private static final String GROUP_KEY = "com.medicare.app.MEDICINE_REMINDERS";
+    private static final int SUMMARY_NOTIFICATION_ID = 1001;
+    // How long a posted notification may be missing from getActiveNotifications before it is taken as swiped away
+    private static final long ACTIVE_LIST_LAG_MILLIS = 5000;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Summary state, only touched on the executor thread. getActiveNotifications lags behind
+    // notify and cancel, so the doses posted and cleared here are tracked directly and the
+    // platform's list only fills in doses posted before the process started.
+    private static final Map<Integer, PostedDose> postedDoses = new LinkedHashMap<>();
+    private static final Set<Integer> clearedDoses = new HashSet<>();
+
+    private static class PostedDose {
+        final CharSequence line;
+        final long postedAt;
+
+        PostedDose(CharSequence line, long postedAt) {
+            this.line = line;
+            this.postedAt = postedAt;
+        }
+    }
+
+    // Called once per process from MediCareApplication.onCreate; creating an existing channel again is a no-op
+    public static void createChannels(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Medicine Reminders", NotificationManager.IMPORTANCE_HIGH);
+            channel.setDescription("Notifications for medicine reminders");
+            channel.enableVibration(true);
+            channel.setVibrationPattern(new long[]{1000, 1000, 1000, 1000, 1000});
+
+            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+            notificationManager.createNotificationChannel(channel);
+        }
+    }
+
+    // Same slot, same ID: a repeat of a dose replaces its previous notification instead of stacking
+    public static int getNotificationId(long medicineId, int timeIndex) {
+        return (int) (medicineId * 1000 + timeIndex) + SUMMARY_NOTIFICATION_ID + 1;
+    }
+
+    public static void putDoseExtras(Intent intent, ReminderSnapshot.Entry entry, long triggerAt) {
+        intent.putExtra("medicine_name", entry.medicineName);
+        intent.putExtra("dosage", entry.dosage);
+        intent.putExtra("time", entry.getTime());
+        intent.putExtra("medicine_id", entry.medicineId);
+        intent.putExtra("user_id", entry.userId);
+        intent.putExtra("time_index", entry.timeIndex);
+        intent.putExtra("trigger_at", triggerAt);
+    }
+
+    // Reads back the dose written by putDoseExtras; the trigger instant lands in nextTriggerAt
+    public static ReminderSnapshot.Entry getDoseExtras(Intent intent) {
+        ReminderSnapshot.Entry entry = new ReminderSnapshot.Entry();
+        entry.medicineName = intent.getStringExtra("medicine_name");
+        entry.dosage = intent.getStringExtra("dosage");
+        entry.medicineId = intent.getLongExtra("medicine_id", -1);
+        entry.userId = intent.getLongExtra("user_id", -1);
+        entry.timeIndex = intent.getIntExtra("time_index", 0);
+        entry.nextTriggerAt = intent.getLongExtra("trigger_at", 0);
+
+        String time = intent.getStringExtra("time");
+        if (time != null) {
+            try {
+                String[] timeParts = time.split(":");
+                entry.minuteOfDay = Integer.parseInt(timeParts[0].trim()) * 60 + Integer.parseInt(timeParts[1].trim());
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Invalid reminder time extra: " + time);
+            }
+        }
+        return entry;
+    }
+
+    public static void runInBackground(Runnable task) {
+        executor.execute(task);
+    }
+
+    // Posts the doses and refreshes the group summary, then finishes the receiver's pending result
+    public static void notifyReminders(Context context, List<ReminderSnapshot.Entry> entries, BroadcastReceiver.PendingResult pendingResult) {
+        final Context appContext = context.getApplicationContext();
+        executor.execute(() -> {
+            try {
+                NotificationManager notificationManager = (NotificationManager) appContext.getSystemService(Context.NOTIFICATION_SERVICE);
+                for (ReminderSnapshot.Entry entry : entries) {
+                    int id = getNotificationId(entry.medicineId, entry.timeIndex);
+                    notificationManager.notify(id, buildDoseNotification(appContext, entry));
+                    trackDose(id, entry);
+                    Log.d(TAG, "Notification shown for: " + entry.medicineName);
+                }
+                if (!entries.isEmpty()) {
+                    updateSummary(appContext, true);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error posting reminder notifications", e);
+            }
+        });
+
+        if (pendingResult != null) {
+            executor.execute(pendingResult::finish);
+        }
+    }
+
+    private static Notification buildDoseNotification(Context context, ReminderSnapshot.Entry entry) {
+        return newDoseBuilder(context, entry)
+                .setContentTitle("Medicine Reminder")
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                // Children stay silent; the summary alerts once for the whole burst
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+                .build();
+    }
+
+    // Re-posts an unacknowledged dose under the same ID. It alerts on its own and gets more urgent each level.
+    // Call from the background thread.
+    public static void postEscalation(Context context, ReminderSnapshot.Entry entry, int level, int maxLevel) {
+        NotificationCompat.Builder builder = newDoseBuilder(context, entry)
+                .setContentTitle("Medicine Reminder (" + level + " of " + maxLevel + ")")
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN);
+        if (level < maxLevel) {
+            builder.setPriority(NotificationCompat.PRIORITY_HIGH);
+        } else {
+            builder.setPriority(NotificationCompat.PRIORITY_MAX)
+                    .setCategory(NotificationCompat.CATEGORY_ALARM);
+        }
+
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        int id = getNotificationId(entry.medicineId, entry.timeIndex);
+        notificationManager.notify(id, builder.build());
+        trackDose(id, entry);
+        Log.d(TAG, "Escalation " + level + " shown for: " + entry.medicineName);
+    }
+
+    private static NotificationCompat.Builder newDoseBuilder(Context context, ReminderSnapshot.Entry entry) {
+        Intent intent = new Intent(context, DashboardActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        String message = getDoseMessage(entry);
+        return new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentText(message)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
+                .setContentIntent(pendingIntent)
+                .addAction(0, "Taken", buildActionIntent(context, entry, ReminderActionReceiver.ACTION_TAKEN))
+                .addAction(0, "Snooze", buildActionIntent(context, entry, ReminderActionReceiver.ACTION_SNOOZE))
+                .addAction(0, "Skip", buildActionIntent(context, entry, ReminderActionReceiver.ACTION_SKIP))
+                .setAutoCancel(true)
+                .setGroup(GROUP_KEY);
+    }
+
+    private static String getDoseMessage(ReminderSnapshot.Entry entry) {
+        String message = "Time to take " + entry.medicineName;
+        if (entry.dosage != null && !entry.dosage.isEmpty()) {
+            message += " (" + entry.dosage + ")";
+        }
+        return message + " at " + entry.getTime();
+    }
+
+    private static void trackDose(int id, ReminderSnapshot.Entry entry) {
+        postedDoses.remove(id);
+        postedDoses.put(id, new PostedDose(getDoseMessage(entry), SystemClock.elapsedRealtime()));
+        clearedDoses.remove(id);
+    }
+
+    // The dose's notification was cancelled or replaced by something that is not a dose
+    private static void clearDose(int id) {
+        postedDoses.remove(id);
+        clearedDoses.add(id);
+    }
+
+    private static PendingIntent buildActionIntent(Context context, ReminderSnapshot.Entry entry, String action) {
+        Intent intent = new Intent(context, ReminderActionReceiver.class).setAction(action);
+        putDoseExtras(intent, entry, entry.nextTriggerAt);
+        return PendingIntent.getBroadcast(context, getNotificationId(entry.medicineId, entry.timeIndex), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    // Taken or skipped: remove the dose and drop or refresh the summary. Call from the background thread.
+    public static void dismissDose(Context context, ReminderSnapshot.Entry entry) {
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        int id = getNotificationId(entry.medicineId, entry.timeIndex);
+        notificationManager.cancel(id);
+        clearDose(id);
+        updateSummary(context, false);
+    }
+
+    // Replaces the dose with a silent note until the snoozed reminder fires again
+    public static void showSnoozed(Context context, ReminderSnapshot.Entry entry, long until) {
+        String message = entry.medicineName + " snoozed until "
+                + DateFormat.getTimeFormat(context).format(new Date(until));
+        Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentTitle("Medicine Reminder")
+                .setContentText(message)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setOnlyAlertOnce(true)
+                .setSilent(true)
+                .setAutoCancel(true)
+                .setGroup(GROUP_KEY)
+                .build();
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        int id = getNotificationId(entry.medicineId, entry.timeIndex);
+        notificationManager.notify(id, notification);
+        clearDose(id);
+        updateSummary(context, false);
+    }
+
+    // Doses this process posted, then any older ones still showing that it has not cleared since
+    private static List<CharSequence> collectSummaryLines(NotificationManager notificationManager) {
+        Set<Integer> activeIds = new HashSet<>();
+        List<CharSequence> olderLines = new ArrayList<>();
+        for (StatusBarNotification active : notificationManager.getActiveNotifications()) {
+            int id = active.getId();
+            activeIds.add(id);
+            if (id == SUMMARY_NOTIFICATION_ID || postedDoses.containsKey(id) || clearedDoses.contains(id)
+                    || !GROUP_KEY.equals(active.getNotification().getGroup())) {
+                continue;
+            }
+            CharSequence text = active.getNotification().extras.getCharSequence(Notification.EXTRA_TEXT);
+            if (text != null) {
+                olderLines.add(text);
+            }
+        }
+
+        List<CharSequence> lines = new ArrayList<>(postedDoses.size() + olderLines.size());
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Map.Entry<Integer, PostedDose>> iterator = postedDoses.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, PostedDose> posted = iterator.next();
+            // Tapped or swiped away by the user, which this class does not hear about
+            if (!activeIds.contains(posted.getKey()) && now - posted.getValue().postedAt > ACTIVE_LIST_LAG_MILLIS) {
+                iterator.remove();
+                continue;
+            }
+            lines.add(posted.getValue().line);
+        }
+        lines.addAll(olderLines);
+        return lines;
+    }
+
+    // A new burst alerts through the summary; a refresh after a dose is handled stays quiet
+    private static void updateSummary(Context context, boolean alert) {
+        try {
+            NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+            List<CharSequence> lines = collectSummaryLines(notificationManager);
+            if (lines.isEmpty()) {
+                notificationManager.cancel(SUMMARY_NOTIFICATION_ID);
+                return;
+            }
+
+            String title = lines.size() == 1 ? "Medicine Reminder" : lines.size() + " medicine reminders";
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle().setBigContentTitle(title);
+            for (CharSequence line : lines) {
+                style.addLine(line);
+            }
+
+            Intent intent = new Intent(context, DashboardActivity.class);
+            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+            PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+            NotificationCompat.Builder summary = new NotificationCompat.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setContentTitle(title)
+                    .setContentText(lines.get(0))
+                    .setStyle(style)
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setContentIntent(pendingIntent)
+                    .setAutoCancel(true)
+                    .setGroup(GROUP_KEY)
+                    .setGroupSummary(true)
+                    .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+                    .setVibrate(new long[]{1000, 1000, 1000, 1000, 1000})
+                    .setSound(android.provider.Settings.System.DEFAULT_NOTIFICATION_URI);
+            if (!alert) {
+                summary.setOnlyAlertOnce(true);
+            }
+            notificationManager.notify(SUMMARY_NOTIFICATION_ID, summary.build());
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating reminder summary", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.medicare.app.utils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * A user's delivery policy: optional quiet hours, during which non-critical doses are held until
+ * the quiet period ends, and a batching window within which that user's doses share one wakeup
+ * and notification burst. Platform-free so the scheduling decisions can be simulated.
+ */
+public class ReminderPolicy {
+
+    public static final ReminderPolicy NONE = new ReminderPolicy(0, -1, -1);
+
+    public interface Lookup {
+        ReminderPolicy forUser(long userId);
+    }
+
+    public final long batchWindowMillis;
+    // Minutes of the day; -1 when quiet hours are off. The period may wrap past midnight.
+    public final int quietStartMinute;
+    public final int quietEndMinute;
+
+    public ReminderPolicy(long batchWindowMillis, int quietStartMinute, int quietEndMinute) {
+        this.batchWindowMillis = Math.max(0, batchWindowMillis);
+        this.quietStartMinute = quietStartMinute;
+        this.quietEndMinute = quietEndMinute;
+    }
+
+    public boolean hasQuietHours() {
+        return quietStartMinute >= 0 && quietEndMinute >= 0 && quietStartMinute != quietEndMinute;
+    }
+
+    public boolean isQuiet(long time, TimeZone zone) {
+        if (!hasQuietHours()) {
+            return false;
+        }
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(time);
+        int minute = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+        if (quietStartMinute < quietEndMinute) {
+            return minute >= quietStartMinute && minute < quietEndMinute;
+        }
+        return minute >= quietStartMinute || minute < quietEndMinute;
+    }
+
+    // Returns time itself, or the end of the quiet period it falls in
+    public long deferPastQuietHours(long time, TimeZone zone) {
+        if (!isQuiet(time, zone)) {
+            return time;
+        }
+        return ReminderScheduler.computeNextTrigger(quietEndMinute, time, zone);
+    }
+
+    /**
+     * Sets deliverAt on every scheduled entry. Non-critical doses in a user's quiet hours are
+     * moved to the end of the quiet period; then each user's doses that fall within their batching
+     * window of the first dose in a group are pulled forward to that dose's time, so they share a
+     * wakeup. A dose is never pulled into quiet hours.
+     */
+    public static void assignDeliveryTimes(List<ReminderSnapshot.Entry> entries, Lookup lookup, TimeZone zone) {
+        List<ReminderSnapshot.Entry> scheduled = new ArrayList<>(entries.size());
+        for (ReminderSnapshot.Entry entry : entries) {
+            if (entry.nextTriggerAt <= 0) {
+                entry.deliverAt = 0;
+                continue;
+            }
+            long deliverAt = entry.nextTriggerAt;
+            if (!entry.critical) {
+                deliverAt = lookup.forUser(entry.userId).deferPastQuietHours(deliverAt, zone);
+            }
+            entry.deliverAt = deliverAt;
+            scheduled.add(entry);
+        }
+
+        Collections.sort(scheduled, (a, b) -> {
+            if (a.userId != b.userId) {
+                return Long.compare(a.userId, b.userId);
+            }
+            return Long.compare(a.deliverAt, b.deliverAt);
+        });
+
+        long groupUserId = Long.MIN_VALUE;
+        long groupStart = 0;
+        ReminderPolicy policy = NONE;
+        for (ReminderSnapshot.Entry entry : scheduled) {
+            if (entry.userId != groupUserId) {
+                groupUserId = entry.userId;
+                policy = lookup.forUser(entry.userId);
+                groupStart = entry.deliverAt;
+                continue;
+            }
+            boolean fits = entry.deliverAt - groupStart <= policy.batchWindowMillis
+                    && (entry.critical || !policy.isQuiet(groupStart, zone));
+            if (fits) {
+                entry.deliverAt = groupStart;
+            } else {
+                groupStart = entry.deliverAt;
+            }
+        }
+    }
+
+    // Request codes of the entries that carry a wakeup: the first one for each user and deliverAt
+    public static Set<Integer> findWakeupLeaders(List<ReminderSnapshot.Entry> entries) {
+        Set<String> wakeups = new HashSet<>();
+        Set<Integer> leaders = new HashSet<>();
+        for (ReminderSnapshot.Entry entry : entries) {
+            if (entry.deliverAt > 0 && wakeups.add(entry.userId + "@" + entry.deliverAt)) {
+                leaders.add(entry.getRequestCode());
+            }
+        }
+        return leaders;
+    }
+}
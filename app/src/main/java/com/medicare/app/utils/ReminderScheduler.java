@@ -9,14 +9,58 @@ import android.util.Log;
 
 import com.medicare.app.database.DatabaseHelper;
 import com.medicare.app.models.Medicine;
+import com.medicare.app.receivers.CourseCompletionReceiver;
 import com.medicare.app.receivers.MedicineReminderReceiver;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
 
 public class ReminderScheduler {
     
     private static final String TAG = "ReminderScheduler";
+    private static final long SWEEP_OFFSET_MILLIS = 5 * 60 * 1000;
+    // How far ahead of now a delivered occurrence may lie; a clock set back further than this was wrong before
+    private static final long MAX_EARLY_DELIVERY_MILLIS = 24 * 60 * 60 * 1000L;
+    
+    private static volatile ReminderClock clock = ReminderClock.SYSTEM;
+    private static volatile AlarmSink alarmSinkOverride;
+    
+    public static void setClock(ReminderClock reminderClock) {
+        clock = reminderClock != null ? reminderClock : ReminderClock.SYSTEM;
+    }
+    
+    public static ReminderClock getClock() {
+        return clock;
+    }
+    
+    // Replaces AlarmManager as the alarm target; pass null to restore the device default
+    public static void setAlarmSink(AlarmSink alarmSink) {
+        alarmSinkOverride = alarmSink;
+    }
+    
+    private static AlarmSink getAlarmSink(Context context) {
+        AlarmSink override = alarmSinkOverride;
+        if (override != null) {
+            return override;
+        }
+        return canScheduleExactAlarms(context) ? new AlarmManagerSink(context) : new WindowedAlarmSink(context);
+    }
+    
+    public static boolean canScheduleExactAlarms(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            return alarmManager.canScheduleExactAlarms();
+        }
+        return true;
+    }
     
     public static void scheduleReminder(Context context, Medicine medicine) {
         if (medicine.getTimes() == null || medicine.getTimes().isEmpty()) {
@@ -24,106 +68,526 @@ public class ReminderScheduler {
             return;
         }
         
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        synchronized (ReminderSnapshot.lock) {
+            List<ReminderSnapshot.Entry> entries = ReminderSnapshot.load(context);
+            if (entries == null) {
+                // First schedule since the snapshot was introduced; capture everyone's reminders
+                rebuildSnapshot(context);
+            } else {
+                AlarmSink alarmSink = getAlarmSink(context);
+                
+                Log.d(TAG, "Scheduling reminders for medicine: " + medicine.getName() + " with " + medicine.getTimes().size() + " times");
+                
+                // Replace the medicine's previous slots; their alarms are re-armed below if they still carry a wakeup
+                Iterator<ReminderSnapshot.Entry> iterator = entries.iterator();
+                while (iterator.hasNext()) {
+                    ReminderSnapshot.Entry entry = iterator.next();
+                    if (entry.medicineId == medicine.getId()) {
+                        alarmSink.cancelAlarm(entry.getRequestCode());
+                        iterator.remove();
+                    }
+                }
+                
+                for (int i = 0; i < medicine.getTimes().size(); i++) {
+                    try {
+                        ReminderSnapshot.Entry entry = ReminderSnapshot.Entry.fromMedicine(medicine, i);
+                        if (entry != null && advance(entry)) {
+                            entries.add(entry);
+                        }
+                    } catch (NumberFormatException e) {
+                        Log.e(TAG, "Invalid reminder time: " + medicine.getTimes().get(i), e);
+                    }
+                }
+                
+                armWakeups(context, alarmSink, entries, false);
+                ReminderSnapshot.save(context, entries);
+            }
+        }
+        ensureCourseCompletionSweep(context);
+        updateInexactDelivery(context);
+    }
+    
+    // Next wall-clock occurrence of minuteOfDay strictly after now in the given zone. Adding a
+    // calendar day keeps the wall-clock time across DST transitions; a time skipped by a
+    // spring-forward gap resolves to the equivalent instant after the gap.
+    public static long computeNextTrigger(int minuteOfDay, long now, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        calendar.set(Calendar.MINUTE, minuteOfDay % 60);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
         
-        Log.d(TAG, "Scheduling reminders for medicine: " + medicine.getName() + " with " + medicine.getTimes().size() + " times");
+        // If the time has already passed today, schedule for tomorrow
+        if (calendar.getTimeInMillis() <= now) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            calendar.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+            calendar.set(Calendar.MINUTE, minuteOfDay % 60);
+        }
+        return calendar.getTimeInMillis();
+    }
+    
+    // Like computeNextTrigger, but honors the entry's course window: occurrences before the
+    // start day are skipped and -1 is returned once the next one would fall after the end day.
+    public static long computeNextTrigger(ReminderSnapshot.Entry entry, long now, TimeZone zone) {
+        long from = now;
+        if (entry.startDate != 0) {
+            from = Math.max(from, startOfDay(entry.startDate, zone, 0) - 1);
+        }
         
-        for (int i = 0; i < medicine.getTimes().size(); i++) {
-            String time = medicine.getTimes().get(i);
-            scheduleReminderForTime(context, alarmManager, medicine, time, i);
+        long triggerAt = computeNextTrigger(entry.minuteOfDay, from, zone);
+        if (entry.endDate != 0 && triggerAt >= startOfDay(entry.endDate, zone, 1)) {
+            return -1;
         }
+        return triggerAt;
     }
     
-    private static void scheduleReminderForTime(Context context, AlarmManager alarmManager, Medicine medicine, String time, int timeIndex) {
-        try {
-            String[] timeParts = time.split(":");
-            int hour = Integer.parseInt(timeParts[0]);
-            int minute = Integer.parseInt(timeParts[1]);
-            
-            Calendar calendar = Calendar.getInstance();
-            calendar.set(Calendar.HOUR_OF_DAY, hour);
-            calendar.set(Calendar.MINUTE, minute);
-            calendar.set(Calendar.SECOND, 0);
-            calendar.set(Calendar.MILLISECOND, 0);
-            
-            // If the time has already passed today, schedule for tomorrow
-            if (calendar.getTimeInMillis() <= System.currentTimeMillis()) {
-                calendar.add(Calendar.DAY_OF_MONTH, 1);
+    private static long startOfDay(long time, TimeZone zone, int dayOffset) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(time);
+        calendar.add(Calendar.DAY_OF_MONTH, dayOffset);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+    
+    private static boolean advance(ReminderSnapshot.Entry entry) {
+        ReminderClock reminderClock = clock;
+        return advance(entry, reminderClock.currentTimeMillis(), reminderClock.getTimeZone());
+    }
+    
+    // Moves the entry to its next occurrence without arming anything; armWakeups decides which
+    // alarm covers it. Counts from the current trigger when that is still ahead, because batching
+    // delivers a dose before it. Returns false once the course has no occurrences left.
+    static boolean advance(ReminderSnapshot.Entry entry, long now, TimeZone zone) {
+        long triggerAt = computeNextTrigger(entry, Math.max(now, entry.nextTriggerAt), zone);
+        if (triggerAt < 0) {
+            Log.d(TAG, "Course finished for " + entry.medicineName + ", no reminder scheduled at " + entry.getTime());
+            entry.nextTriggerAt = 0;
+            return false;
+        }
+        entry.nextTriggerAt = triggerAt;
+        return true;
+    }
+    
+    /**
+     * Puts the entry back on a schedule after a reboot or a clock or timezone change. A dose that
+     * quiet hours are holding past its trigger keeps that occurrence, so it is still delivered
+     * when the quiet period ends; every other entry is recomputed from now so the new clock or
+     * zone takes effect, skipping an occurrence that batching has already delivered early.
+     * Returns false once the course has no occurrences left.
+     */
+    static boolean reanchor(ReminderSnapshot.Entry entry, long now, TimeZone zone) {
+        if (entry.nextTriggerAt > 0 && entry.nextTriggerAt <= now && entry.deliverAt > now) {
+            return true;
+        }
+        long from = now;
+        if (entry.lastTriggerAt > now && entry.lastTriggerAt - now < MAX_EARLY_DELIVERY_MILLIS) {
+            from = entry.lastTriggerAt;
+        }
+        long triggerAt = computeNextTrigger(entry, from, zone);
+        if (triggerAt < 0) {
+            entry.nextTriggerAt = 0;
+            return false;
+        }
+        entry.nextTriggerAt = triggerAt;
+        return true;
+    }
+    
+    private static int armWakeups(Context context, AlarmSink alarmSink, List<ReminderSnapshot.Entry> entries, boolean rearmAll) {
+        return armWakeups(alarmSink, entries, getPolicyLookup(context), clock.getTimeZone(), rearmAll);
+    }
+    
+    /**
+     * Applies each user's quiet hours and batching to the whole schedule, then arms one alarm per
+     * resulting wakeup and cancels the alarms of doses that now ride along with another. Alarms
+     * whose wakeup did not move are left alone unless rearmAll is set. Returns the number armed.
+     */
+    static int armWakeups(AlarmSink alarmSink, List<ReminderSnapshot.Entry> entries, ReminderPolicy.Lookup lookup,
+            TimeZone zone, boolean rearmAll) {
+        Set<Integer> previousLeaders = ReminderPolicy.findWakeupLeaders(entries);
+        Map<Integer, Long> previousDeliverAt = new HashMap<>();
+        for (ReminderSnapshot.Entry entry : entries) {
+            previousDeliverAt.put(entry.getRequestCode(), entry.deliverAt);
+        }
+        
+        ReminderPolicy.assignDeliveryTimes(entries, lookup, zone);
+        
+        Set<Integer> leaders = ReminderPolicy.findWakeupLeaders(entries);
+        int armed = 0;
+        for (ReminderSnapshot.Entry entry : entries) {
+            int requestCode = entry.getRequestCode();
+            if (leaders.contains(requestCode)) {
+                if (rearmAll || !previousLeaders.contains(requestCode) || previousDeliverAt.get(requestCode) != entry.deliverAt) {
+                    try {
+                        alarmSink.setAlarm(entry, entry.deliverAt);
+                        armed++;
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error scheduling reminder", e);
+                    }
+                }
+            } else if (previousLeaders.contains(requestCode)) {
+                alarmSink.cancelAlarm(requestCode);
+            }
+        }
+        Log.d(TAG, "Armed " + armed + " wakeups for " + entries.size() + " reminders (" + leaders.size() + " wakeups total)");
+        return armed;
+    }
+    
+    // Reads each user's policy once per pass
+    private static ReminderPolicy.Lookup getPolicyLookup(Context context) {
+        final Map<Long, ReminderPolicy> policies = new HashMap<>();
+        return userId -> {
+            ReminderPolicy policy = policies.get(userId);
+            if (policy == null) {
+                policy = ReminderSettings.getPolicy(context, userId);
+                policies.put(userId, policy);
+            }
+            return policy;
+        };
+    }
+    
+    public static void cancelReminder(Context context, Medicine medicine) {
+        AlarmSink alarmSink = getAlarmSink(context);
+        
+        synchronized (ReminderSnapshot.lock) {
+            List<ReminderSnapshot.Entry> entries = ReminderSnapshot.load(context);
+            if (entries != null) {
+                boolean removed = false;
+                Iterator<ReminderSnapshot.Entry> iterator = entries.iterator();
+                while (iterator.hasNext()) {
+                    ReminderSnapshot.Entry entry = iterator.next();
+                    if (entry.medicineId == medicine.getId()) {
+                        alarmSink.cancelAlarm(entry.getRequestCode());
+                        iterator.remove();
+                        removed = true;
+                    }
+                }
+                if (removed) {
+                    // Doses that were batched with the cancelled ones need a wakeup of their own again
+                    armWakeups(context, alarmSink, entries, false);
+                    ReminderSnapshot.save(context, entries);
+                }
+            } else if (medicine.getTimes() != null) {
+                for (int i = 0; i < medicine.getTimes().size(); i++) {
+                    alarmSink.cancelAlarm((int) (medicine.getId() * 1000 + i));
+                }
+            }
+        }
+        
+        SnoozeManager.cancelMedicine(context, medicine.getId());
+        EscalationManager.cancelMedicine(context, medicine.getId());
+        updateInexactDelivery(context);
+        SnoozeManager.updateAlarm(context);
+        Log.d(TAG, "Cancelled reminders for " + medicine.getName());
+    }
+    
+    public static void rescheduleAllReminders(Context context, long userId) {
+        DatabaseHelper databaseHelper = new DatabaseHelper(context);
+        List<Medicine> activeMedicines = databaseHelper.getActiveMedicines(userId);
+        
+        for (Medicine medicine : activeMedicines) {
+            scheduleReminder(context, medicine);
+        }
+        
+        databaseHelper.close();
+        Log.d(TAG, "Rescheduled all reminders for user: " + userId);
+    }
+    
+    // Re-arms every user's reminders from the snapshot in a single pass; the medicines
+    // table is only read when no snapshot has been written yet. Returns the number armed.
+    public static int restoreAllReminders(Context context) {
+        List<ReminderSnapshot.Entry> scheduled;
+        int armed;
+        synchronized (ReminderSnapshot.lock) {
+            List<ReminderSnapshot.Entry> entries = ReminderSnapshot.load(context);
+            if (entries == null) {
+                int rebuilt = rebuildSnapshot(context);
+                updateInexactDelivery(context);
+                return rebuilt;
             }
             
-            Intent intent = new Intent(context, MedicineReminderReceiver.class);
-            intent.putExtra("medicine_name", medicine.getName());
-            intent.putExtra("dosage", medicine.getDosage());
-            intent.putExtra("time", time);
-            
-            // Create unique request code for each reminder
-            int requestCode = (int) (medicine.getId() * 1000 + timeIndex);
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context, 
-                requestCode, 
-                intent, 
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
+            long now = clock.currentTimeMillis();
+            scheduled = new ArrayList<>(entries.size());
+            for (ReminderSnapshot.Entry entry : entries) {
+                if (reanchor(entry, now, clock.getTimeZone())) {
+                    scheduled.add(entry);
+                }
+            }
             
-            // Schedule the alarm
-            Log.d(TAG, "Attempting to schedule alarm for " + medicine.getName() + " at " + time + 
-                  " (timestamp: " + calendar.getTimeInMillis() + ")");
+            // Nothing survives a reboot, so every wakeup is armed again
+            armed = armWakeups(context, getAlarmSink(context), scheduled, true);
+            ReminderSnapshot.save(context, scheduled);
+        }
+        ensureCourseCompletionSweep(context);
+        updateInexactDelivery(context);
+        // Alarms do not survive a reboot, snoozes and escalations included
+        SnoozeManager.updateAlarm(context);
+        EscalationManager.updateAlarm(context);
+        Log.d(TAG, "Restored " + scheduled.size() + " reminders from snapshot with " + armed + " wakeups");
+        return scheduled.size();
+    }
+    
+    // Called after a clock or timezone change, or a change to a user's quiet hours or batching.
+    // Recomputes every trigger from the stored schedule, keeping doses held by quiet hours, and
+    // only re-arms the alarms whose wakeup actually moved.
+    public static int rescheduleChangedTriggers(Context context) {
+        int total;
+        int changed;
+        boolean moved;
+        synchronized (ReminderSnapshot.lock) {
+            List<ReminderSnapshot.Entry> entries = ReminderSnapshot.load(context);
+            if (entries == null) {
+                int rebuilt = rebuildSnapshot(context);
+                updateInexactDelivery(context);
+                return rebuilt;
+            }
             
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(
-                    AlarmManager.RTC_WAKEUP,
-                    calendar.getTimeInMillis(),
-                    pendingIntent
-                );
-            } else {
-                alarmManager.setExact(
-                    AlarmManager.RTC_WAKEUP,
-                    calendar.getTimeInMillis(),
-                    pendingIntent
-                );
+            AlarmSink alarmSink = getAlarmSink(context);
+            long now = clock.currentTimeMillis();
+            int finished = 0;
+            List<ReminderSnapshot.Entry> previous = new ArrayList<>(entries.size());
+            List<ReminderSnapshot.Entry> remaining = new ArrayList<>(entries.size());
+            for (ReminderSnapshot.Entry entry : entries) {
+                previous.add(entry.copy());
+                if (!reanchor(entry, now, clock.getTimeZone())) {
+                    alarmSink.cancelAlarm(entry.getRequestCode());
+                    finished++;
+                    continue;
+                }
+                remaining.add(entry);
             }
             
-            Log.d(TAG, "Successfully scheduled reminder for " + medicine.getName() + " at " + time + 
-                  " with request code: " + requestCode);
+            total = entries.size();
+            changed = finished + armWakeups(context, alarmSink, remaining, false);
+            // Doses that joined another's wakeup move without an alarm being armed. With nothing
+            // finished, remaining lines up with previous.
+            moved = changed > 0;
+            for (int i = 0; i < previous.size() && !moved; i++) {
+                ReminderSnapshot.Entry before = previous.get(i);
+                ReminderSnapshot.Entry after = remaining.get(i);
+                moved = before.nextTriggerAt != after.nextTriggerAt || before.deliverAt != after.deliverAt;
+            }
+            if (moved) {
+                ReminderSnapshot.save(context, remaining);
+            }
+        }
+        if (moved) {
+            updateInexactDelivery(context);
+            SnoozeManager.updateAlarm(context);
+        }
+        Log.d(TAG, "Time change: re-armed " + changed + " of " + total + " reminders");
+        return changed;
+    }
+    
+    // Delivery path for every reminder wakeup: returns copies of every reminder whose wakeup has
+    // passed (holding the wakeup they were due at) and advances each to its next occurrence. A
+    // batched wakeup therefore delivers all of its doses in one go.
+    public static List<ReminderSnapshot.Entry> collectDueReminders(Context context) {
+        List<ReminderSnapshot.Entry> due;
+        synchronized (ReminderSnapshot.lock) {
+            List<ReminderSnapshot.Entry> entries = ReminderSnapshot.load(context);
+            if (entries == null) {
+                return new ArrayList<>();
+            }
             
-        } catch (Exception e) {
-            Log.e(TAG, "Error scheduling reminder", e);
+            ReminderClock reminderClock = clock;
+            due = collectDue(entries, getAlarmSink(context), getPolicyLookup(context),
+                    reminderClock.currentTimeMillis(), reminderClock.getTimeZone());
+            if (!due.isEmpty()) {
+                ReminderSnapshot.save(context, entries);
+            }
         }
+        updateInexactDelivery(context);
+        Log.d(TAG, "Collected " + due.size() + " due reminders");
+        return due;
     }
     
-    public static void cancelReminder(Context context, Medicine medicine) {
-        if (medicine.getTimes() == null || medicine.getTimes().isEmpty()) {
+    // Platform-free core of collectDueReminders. Advances the due entries in place, drops the ones
+    // whose course is over and re-arms the wakeups that moved.
+    static List<ReminderSnapshot.Entry> collectDue(List<ReminderSnapshot.Entry> entries, AlarmSink alarmSink,
+            ReminderPolicy.Lookup lookup, long now, TimeZone zone) {
+        List<ReminderSnapshot.Entry> due = new ArrayList<>();
+        Iterator<ReminderSnapshot.Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            ReminderSnapshot.Entry entry = iterator.next();
+            if (entry.deliverAt > 0 && entry.deliverAt <= now) {
+                due.add(entry.copy());
+                entry.lastTriggerAt = entry.nextTriggerAt;
+                if (!advance(entry, now, zone)) {
+                    alarmSink.cancelAlarm(entry.getRequestCode());
+                    iterator.remove();
+                }
+            }
+        }
+        
+        if (!due.isEmpty()) {
+            armWakeups(alarmSink, entries, lookup, zone, false);
+        }
+        return due;
+    }
+    
+    // Opens at the last trigger within maxLatenessMillis of the earliest pending one and closes
+    // maxLatenessMillis after the earliest, so one wakeup covers the whole group and no dose in it
+    // is later than the bound. Returns null when nothing is pending.
+    public static long[] computeSharedWakeupWindow(List<ReminderSnapshot.Entry> entries, long maxLatenessMillis) {
+        long earliest = Long.MAX_VALUE;
+        for (ReminderSnapshot.Entry entry : entries) {
+            if (entry.deliverAt > 0 && entry.deliverAt < earliest) {
+                earliest = entry.deliverAt;
+            }
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return null;
+        }
+        
+        long windowEnd = earliest + maxLatenessMillis;
+        long windowStart = earliest;
+        for (ReminderSnapshot.Entry entry : entries) {
+            if (entry.deliverAt > windowStart && entry.deliverAt <= windowEnd) {
+                windowStart = entry.deliverAt;
+            }
+        }
+        return new long[]{windowStart, windowEnd};
+    }
+    
+    // Keeps the shared wakeup window and the periodic catch-up sweep in line with the current
+    // exact-alarm permission. Both are torn down again once exact alarms are allowed.
+    private static void updateInexactDelivery(Context context) {
+        if (alarmSinkOverride != null) {
             return;
         }
         
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        Intent windowIntent = new Intent(context, MedicineReminderReceiver.class).setAction(MedicineReminderReceiver.ACTION_DELIVER_DUE);
+        Intent sweepIntent = new Intent(context, MedicineReminderReceiver.class).setAction(MedicineReminderReceiver.ACTION_CATCH_UP);
         
-        for (int i = 0; i < medicine.getTimes().size(); i++) {
-            Intent intent = new Intent(context, MedicineReminderReceiver.class);
-            int requestCode = (int) (medicine.getId() * 1000 + i);
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context, 
-                requestCode, 
-                intent, 
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-            
+        if (canScheduleExactAlarms(context)) {
+            cancelIfPending(context, alarmManager, windowIntent);
+            cancelIfPending(context, alarmManager, sweepIntent);
+            return;
+        }
+        
+        List<ReminderSnapshot.Entry> entries = ReminderSnapshot.load(context);
+        long[] window = entries != null ? computeSharedWakeupWindow(entries, ReminderSettings.getMaxLatenessMillis(context)) : null;
+        if (window == null) {
+            cancelIfPending(context, alarmManager, windowIntent);
+        } else {
+            PendingIntent windowPendingIntent = PendingIntent.getBroadcast(context, 0, windowIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+            alarmManager.setWindow(AlarmManager.RTC_WAKEUP, window[0], window[1] - window[0], windowPendingIntent);
+            Log.d(TAG, "Inexact mode: shared wakeup window " + window[0] + " - " + window[1]);
+        }
+        
+        // Non-waking, so it only runs when something else has woken the device, e.g. after doze
+        if (PendingIntent.getBroadcast(context, 0, sweepIntent, PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE) == null) {
+            PendingIntent sweepPendingIntent = PendingIntent.getBroadcast(context, 0, sweepIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+            alarmManager.setInexactRepeating(AlarmManager.RTC, clock.currentTimeMillis() + AlarmManager.INTERVAL_FIFTEEN_MINUTES,
+                    AlarmManager.INTERVAL_FIFTEEN_MINUTES, sweepPendingIntent);
+        }
+    }
+    
+    private static void cancelIfPending(Context context, AlarmManager alarmManager, Intent intent) {
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE);
+        if (pendingIntent != null) {
             alarmManager.cancel(pendingIntent);
             pendingIntent.cancel();
         }
+    }
+    
+    // Deactivates every medicine whose course ended before today and cancels its alarms, using
+    // the indexed end-date query so only finished rows are read. Returns the number deactivated.
+    public static int completeFinishedCourses(Context context) {
+        ReminderClock reminderClock = clock;
+        Date startOfToday = new Date(startOfDay(reminderClock.currentTimeMillis(), reminderClock.getTimeZone(), 0));
         
-        Log.d(TAG, "Cancelled reminders for " + medicine.getName());
+        DatabaseHelper databaseHelper = new DatabaseHelper(context);
+        List<Medicine> finished = databaseHelper.getActiveMedicinesEndingBefore(startOfToday);
+        if (finished.isEmpty()) {
+            databaseHelper.close();
+            return 0;
+        }
+        
+        AlarmSink alarmSink = getAlarmSink(context);
+        List<Long> ids = new ArrayList<>(finished.size());
+        for (Medicine medicine : finished) {
+            ids.add(medicine.getId());
+            if (medicine.getTimes() != null) {
+                for (int i = 0; i < medicine.getTimes().size(); i++) {
+                    alarmSink.cancelAlarm((int) (medicine.getId() * 1000 + i));
+                }
+            }
+        }
+        
+        int deactivated = databaseHelper.deactivateMedicines(ids);
+        databaseHelper.close();
+        
+        synchronized (ReminderSnapshot.lock) {
+            List<ReminderSnapshot.Entry> entries = ReminderSnapshot.load(context);
+            if (entries != null) {
+                Set<Long> finishedIds = new HashSet<>(ids);
+                Iterator<ReminderSnapshot.Entry> iterator = entries.iterator();
+                while (iterator.hasNext()) {
+                    if (finishedIds.contains(iterator.next().medicineId)) {
+                        iterator.remove();
+                    }
+                }
+                armWakeups(context, alarmSink, entries, false);
+                ReminderSnapshot.save(context, entries);
+            }
+        }
+        updateInexactDelivery(context);
+        Log.d(TAG, "Completed " + deactivated + " finished medicine courses");
+        return deactivated;
     }
     
-    public static void rescheduleAllReminders(Context context, long userId) {
+    // Arms the once-a-day, non-waking course completion sweep unless it is already pending
+    public static void ensureCourseCompletionSweep(Context context) {
+        Intent intent = new Intent(context, CourseCompletionReceiver.class);
+        PendingIntent existing = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE);
+        if (existing != null) {
+            return;
+        }
+        
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        ReminderClock reminderClock = clock;
+        long firstRun = startOfDay(reminderClock.currentTimeMillis(), reminderClock.getTimeZone(), 1) + SWEEP_OFFSET_MILLIS;
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.RTC, firstRun, AlarmManager.INTERVAL_DAY, pendingIntent);
+        Log.d(TAG, "Course completion sweep armed, first run at " + firstRun);
+    }
+    
+    // Callers hold ReminderSnapshot.lock
+    private static int rebuildSnapshot(Context context) {
         DatabaseHelper databaseHelper = new DatabaseHelper(context);
-        List<Medicine> activeMedicines = databaseHelper.getActiveMedicines(userId);
+        List<Medicine> activeMedicines = databaseHelper.getActiveMedicinesForAllUsers();
+        databaseHelper.close();
         
+        List<ReminderSnapshot.Entry> scheduled = new ArrayList<>();
         for (Medicine medicine : activeMedicines) {
-            scheduleReminder(context, medicine);
+            if (medicine.getTimes() == null) {
+                continue;
+            }
+            for (int i = 0; i < medicine.getTimes().size(); i++) {
+                try {
+                    ReminderSnapshot.Entry entry = ReminderSnapshot.Entry.fromMedicine(medicine, i);
+                    if (entry != null && advance(entry)) {
+                        scheduled.add(entry);
+                    }
+                } catch (NumberFormatException e) {
+                    Log.e(TAG, "Invalid reminder time: " + medicine.getTimes().get(i), e);
+                }
+            }
         }
         
-        databaseHelper.close();
-        Log.d(TAG, "Rescheduled all reminders for user: " + userId);
+        armWakeups(context, getAlarmSink(context), scheduled, true);
+        ReminderSnapshot.save(context, scheduled);
+        Log.d(TAG, "Rebuilt reminder snapshot with " + scheduled.size() + " reminders");
+        return scheduled.size();
     }
-}
\ No newline at end of file
+}
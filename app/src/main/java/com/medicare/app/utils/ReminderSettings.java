@@ -0,0 +1,87 @@
+package com.medicare.app.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+// Device-wide reminder tuning. Kept out of MediCarePrefs, which is cleared on logout.
+public class ReminderSettings {
+
+    private static final String PREFS_NAME = "MediCareReminderSettings";
+    private static final String KEY_MAX_LATENESS_MINUTES = "max_lateness_minutes";
+    private static final String KEY_SNOOZE_MINUTES = "snooze_minutes";
+    private static final String KEY_ESCALATION_INTERVAL_MINUTES = "escalation_interval_minutes";
+    private static final String KEY_MAX_ESCALATIONS = "max_escalations";
+    // Per-user keys, suffixed with the user ID
+    private static final String KEY_BATCH_WINDOW_MINUTES = "batch_window_minutes_";
+    private static final String KEY_QUIET_START_MINUTE = "quiet_start_minute_";
+    private static final String KEY_QUIET_END_MINUTE = "quiet_end_minute_";
+
+    public static final int DEFAULT_MAX_LATENESS_MINUTES = 15;
+    public static final int DEFAULT_SNOOZE_MINUTES = 10;
+    public static final int DEFAULT_ESCALATION_INTERVAL_MINUTES = 10;
+    public static final int DEFAULT_MAX_ESCALATIONS = 3;
+    // Off unless the user opts in, since batching moves doses ahead of their set time
+    public static final int DEFAULT_BATCH_WINDOW_MINUTES = 0;
+    public static final int MAX_BATCH_WINDOW_MINUTES = 60;
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // Upper bound on how late a reminder may fire when exact alarms are unavailable
+    public static long getMaxLatenessMillis(Context context) {
+        return getPreferences(context).getInt(KEY_MAX_LATENESS_MINUTES, DEFAULT_MAX_LATENESS_MINUTES) * 60L * 1000;
+    }
+
+    public static int getSnoozeMinutes(Context context) {
+        return getPreferences(context).getInt(KEY_SNOOZE_MINUTES, DEFAULT_SNOOZE_MINUTES);
+    }
+
+    public static void setSnoozeMinutes(Context context, int minutes) {
+        getPreferences(context).edit().putInt(KEY_SNOOZE_MINUTES, Math.max(1, minutes)).apply();
+    }
+
+    public static long getEscalationIntervalMillis(Context context) {
+        return getPreferences(context).getInt(KEY_ESCALATION_INTERVAL_MINUTES, DEFAULT_ESCALATION_INTERVAL_MINUTES) * 60L * 1000;
+    }
+
+    public static void setEscalationIntervalMinutes(Context context, int minutes) {
+        getPreferences(context).edit().putInt(KEY_ESCALATION_INTERVAL_MINUTES, Math.max(1, minutes)).apply();
+    }
+
+    // How many times an unacknowledged dose is re-notified before it is marked missed; 0 turns escalation off
+    public static int getMaxEscalations(Context context) {
+        return getPreferences(context).getInt(KEY_MAX_ESCALATIONS, DEFAULT_MAX_ESCALATIONS);
+    }
+
+    public static void setMaxEscalations(Context context, int count) {
+        getPreferences(context).edit().putInt(KEY_MAX_ESCALATIONS, Math.max(0, count)).apply();
+    }
+
+    public static ReminderPolicy getPolicy(Context context, long userId) {
+        SharedPreferences preferences = getPreferences(context);
+        return new ReminderPolicy(
+                preferences.getInt(KEY_BATCH_WINDOW_MINUTES + userId, DEFAULT_BATCH_WINDOW_MINUTES) * 60L * 1000,
+                preferences.getInt(KEY_QUIET_START_MINUTE + userId, -1),
+                preferences.getInt(KEY_QUIET_END_MINUTE + userId, -1));
+    }
+
+    // 0 gives every dose its own wakeup. Callers reschedule afterwards (ReminderScheduler.rescheduleChangedTriggers).
+    public static void setBatchWindowMinutes(Context context, long userId, int minutes) {
+        getPreferences(context).edit()
+                .putInt(KEY_BATCH_WINDOW_MINUTES + userId, Math.max(0, Math.min(MAX_BATCH_WINDOW_MINUTES, minutes)))
+                .apply();
+    }
+
+    // Minutes of the day; pass -1 for both to turn quiet hours off. Callers reschedule afterwards, as above.
+    public static void setQuietHours(Context context, long userId, int startMinute, int endMinute) {
+        getPreferences(context).edit()
+                .putInt(KEY_QUIET_START_MINUTE + userId, startMinute)
+                .putInt(KEY_QUIET_END_MINUTE + userId, endMinute)
+                .apply();
+    }
+
+    public static void setMaxLatenessMinutes(Context context, int minutes) {
+        getPreferences(context).edit().putInt(KEY_MAX_LATENESS_MINUTES, Math.max(1, minutes)).apply();
+    }
+}
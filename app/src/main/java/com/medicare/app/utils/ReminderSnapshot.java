@@ -0,0 +1,199 @@
+package com.medicare.app.utils;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.medicare.app.models.Medicine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compact, device-wide copy of every pending reminder (all users), kept in sync by
+ * ReminderScheduler so reminders can be restored after a reboot without reading the
+ * medicines table.
+ */
+public class ReminderSnapshot {
+
+    private static final String TAG = "ReminderSnapshot";
+    private static final String FILE_NAME = "reminder_schedule.bin";
+    private static final int FORMAT_VERSION = 4;
+
+    // Callers hold this across a whole load, modify and save so concurrent updates from the UI,
+    // the notifier thread and receivers cannot overwrite each other. load and save take it too.
+    static final Object lock = new Object();
+
+    public static class Entry {
+        public long medicineId;
+        public long userId;
+        public int timeIndex;
+        public int minuteOfDay;
+        public String medicineName;
+        public String dosage;
+        // Course window as stored on the medicine, 0 when unset
+        public long startDate;
+        public long endDate;
+        public boolean critical;
+        public long nextTriggerAt;
+        // When the dose is actually delivered, after quiet hours and batching (see ReminderPolicy)
+        public long deliverAt;
+        // Trigger of the occurrence delivered last, 0 before the first; a batched dose is delivered
+        // ahead of its trigger, and this keeps that occurrence from coming round again
+        public long lastTriggerAt;
+
+        public static Entry fromMedicine(Medicine medicine, int timeIndex) {
+            String time = medicine.getTimes().get(timeIndex);
+            String[] timeParts = time.split(":");
+            if (timeParts.length < 2) {
+                return null;
+            }
+
+            Entry entry = new Entry();
+            entry.medicineId = medicine.getId();
+            entry.userId = medicine.getUserId();
+            entry.timeIndex = timeIndex;
+            entry.minuteOfDay = Integer.parseInt(timeParts[0].trim()) * 60 + Integer.parseInt(timeParts[1].trim());
+            entry.medicineName = medicine.getName();
+            entry.dosage = medicine.getDosage();
+            entry.startDate = medicine.getStartDate() != null ? medicine.getStartDate().getTime() : 0;
+            entry.endDate = medicine.getEndDate() != null ? medicine.getEndDate().getTime() : 0;
+            entry.critical = medicine.isCritical();
+            return entry;
+        }
+
+        public int getHour() { return minuteOfDay / 60; }
+        public int getMinute() { return minuteOfDay % 60; }
+
+        public String getTime() {
+            return String.format(Locale.US, "%02d:%02d", getHour(), getMinute());
+        }
+
+        public Entry copy() {
+            Entry entry = new Entry();
+            entry.medicineId = medicineId;
+            entry.userId = userId;
+            entry.timeIndex = timeIndex;
+            entry.minuteOfDay = minuteOfDay;
+            entry.medicineName = medicineName;
+            entry.dosage = dosage;
+            entry.startDate = startDate;
+            entry.endDate = endDate;
+            entry.critical = critical;
+            entry.nextTriggerAt = nextTriggerAt;
+            entry.deliverAt = deliverAt;
+            entry.lastTriggerAt = lastTriggerAt;
+            return entry;
+        }
+
+        public int getRequestCode() {
+            return (int) (medicineId * 1000 + timeIndex);
+        }
+    }
+
+    /**
+     * Returns the stored entries, or null when no usable snapshot exists yet (first run
+     * after an upgrade or an unreadable file) and it has to be rebuilt from the database.
+     */
+    public static List<Entry> load(Context context) {
+        synchronized (lock) {
+            return read(context, FILE_NAME);
+        }
+    }
+
+    public static void save(Context context, List<Entry> entries) {
+        synchronized (lock) {
+            write(context, FILE_NAME, entries);
+        }
+    }
+
+    private static AtomicFile getFile(Context context, String fileName) {
+        return new AtomicFile(new File(context.getFilesDir(), fileName));
+    }
+
+    // Shared with SnoozeManager, which keeps its entries in the same format; callers hold their own lock
+    static List<Entry> read(Context context, String fileName) {
+        AtomicFile file = getFile(context, fileName);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(file.openRead()));
+            if (in.readInt() != FORMAT_VERSION) {
+                Log.w(TAG, fileName + " format changed, it will be rebuilt");
+                return null;
+            }
+
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry();
+                entry.medicineId = in.readLong();
+                entry.userId = in.readLong();
+                entry.timeIndex = in.readShort();
+                entry.minuteOfDay = in.readShort();
+                entry.medicineName = in.readUTF();
+                entry.dosage = in.readUTF();
+                entry.startDate = in.readLong();
+                entry.endDate = in.readLong();
+                entry.critical = in.readBoolean();
+                entry.nextTriggerAt = in.readLong();
+                entry.deliverAt = in.readLong();
+                entry.lastTriggerAt = in.readLong();
+                entries.add(entry);
+            }
+            return entries;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading " + fileName, e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    static void write(Context context, String fileName, List<Entry> entries) {
+        AtomicFile file = getFile(context, fileName);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeLong(entry.medicineId);
+                out.writeLong(entry.userId);
+                out.writeShort(entry.timeIndex);
+                out.writeShort(entry.minuteOfDay);
+                out.writeUTF(entry.medicineName != null ? entry.medicineName : "");
+                out.writeUTF(entry.dosage != null ? entry.dosage : "");
+                out.writeLong(entry.startDate);
+                out.writeLong(entry.endDate);
+                out.writeBoolean(entry.critical);
+                out.writeLong(entry.nextTriggerAt);
+                out.writeLong(entry.deliverAt);
+                out.writeLong(entry.lastTriggerAt);
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing " + fileName, e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+}
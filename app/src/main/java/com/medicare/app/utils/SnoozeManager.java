@@ -0,0 +1,241 @@
+package com.medicare.app.utils;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.medicare.app.receivers.MedicineReminderReceiver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Snoozed doses. Every snooze is persisted so it survives process death and is covered by one
+ * coalesced alarm, or rides along with a regular reminder's wakeup when one is due soon after.
+ * Short snoozes are delivered by an in-process timer wheel while the app is alive; for those the
+ * alarm is only an inexact fallback, so a one-minute snooze never costs an exact alarm. Whichever
+ * delivers first removes the dose from the store.
+ */
+public class SnoozeManager {
+
+    private static final String TAG = "SnoozeManager";
+    private static final String FILE_NAME = "reminder_snoozes.bin";
+
+    // Snoozes up to this long are delivered by the timer wheel, with the alarm as fallback
+    public static final long SHORT_SNOOZE_MAX_MILLIS = 3 * 60 * 1000;
+
+    // 1 s ticks over a 4 minute horizon, at most 64 doses waiting in process
+    private static final TimerWheel timerWheel = new TimerWheel(1000, 241, 64);
+
+    private static final Object lock = new Object();
+
+    // Returns the time the dose will be delivered again
+    public static long snooze(Context context, ReminderSnapshot.Entry entry, long delayMillis) {
+        final Context appContext = context.getApplicationContext();
+        long until = ReminderScheduler.getClock().currentTimeMillis() + delayMillis;
+        ReminderSnapshot.Entry snoozed = entry.copy();
+        snoozed.nextTriggerAt = until;
+        snoozed.deliverAt = until;
+
+        synchronized (lock) {
+            List<ReminderSnapshot.Entry> snoozes = load(appContext);
+            removeDose(snoozes, entry.medicineId, entry.timeIndex);
+            snoozes.add(snoozed);
+            ReminderSnapshot.write(appContext, FILE_NAME, snoozes);
+        }
+
+        if (delayMillis <= SHORT_SNOOZE_MAX_MILLIS) {
+            timerWheel.schedule(entry.getRequestCode(), delayMillis,
+                    () -> ReminderNotifier.runInBackground(() -> deliverDue(appContext)));
+        } else {
+            timerWheel.cancel(entry.getRequestCode());
+        }
+        updateAlarm(appContext);
+        Log.d(TAG, "Snoozed " + entry.medicineName + " until " + until);
+        return until;
+    }
+
+    // The dose was taken or skipped: drop any snooze still pending for it
+    public static void cancel(Context context, long medicineId, int timeIndex) {
+        boolean removed;
+        synchronized (lock) {
+            List<ReminderSnapshot.Entry> snoozes = load(context);
+            removed = removeDose(snoozes, medicineId, timeIndex);
+            if (removed) {
+                ReminderSnapshot.write(context, FILE_NAME, snoozes);
+            }
+        }
+        if (removed) {
+            timerWheel.cancel(medicineId * 1000 + timeIndex);
+            updateAlarm(context);
+        }
+    }
+
+    public static void cancelMedicine(Context context, long medicineId) {
+        boolean removed = false;
+        synchronized (lock) {
+            List<ReminderSnapshot.Entry> snoozes = load(context);
+            Iterator<ReminderSnapshot.Entry> iterator = snoozes.iterator();
+            while (iterator.hasNext()) {
+                ReminderSnapshot.Entry entry = iterator.next();
+                if (entry.medicineId == medicineId) {
+                    timerWheel.cancel(entry.getRequestCode());
+                    iterator.remove();
+                    removed = true;
+                }
+            }
+            if (removed) {
+                ReminderSnapshot.write(context, FILE_NAME, snoozes);
+            }
+        }
+        if (removed) {
+            updateAlarm(context);
+        }
+    }
+
+    // Removes and returns every snooze that is due. Called from every reminder wakeup so snoozed
+    // doses ride along with regular reminders.
+    public static List<ReminderSnapshot.Entry> collectDue(Context context) {
+        List<ReminderSnapshot.Entry> due = new ArrayList<>();
+        long now = ReminderScheduler.getClock().currentTimeMillis();
+        synchronized (lock) {
+            List<ReminderSnapshot.Entry> snoozes = load(context);
+            Iterator<ReminderSnapshot.Entry> iterator = snoozes.iterator();
+            while (iterator.hasNext()) {
+                ReminderSnapshot.Entry entry = iterator.next();
+                if (entry.nextTriggerAt <= now) {
+                    due.add(entry);
+                    iterator.remove();
+                }
+            }
+            if (due.isEmpty()) {
+                return due;
+            }
+            ReminderSnapshot.write(context, FILE_NAME, snoozes);
+        }
+
+        for (ReminderSnapshot.Entry entry : due) {
+            timerWheel.cancel(entry.getRequestCode());
+        }
+        updateAlarm(context);
+        return due;
+    }
+
+    // Timer wheel path: runs on the notifier thread while the process is alive
+    private static void deliverDue(Context context) {
+        List<ReminderSnapshot.Entry> due = collectDue(context);
+        if (due.isEmpty()) {
+            // The fallback alarm got there first
+            return;
+        }
+        long now = ReminderScheduler.getClock().currentTimeMillis();
+        LatenessHistogram.record(context, due, now);
+        EscalationManager.track(context, due, now);
+        Log.d(TAG, "Timer wheel delivered " + due.size() + " snoozed reminders");
+        ReminderNotifier.notifyReminders(context, due, null);
+    }
+
+    // What process death does to the wheel; the persisted snoozes and their alarm stay
+    static void clearTimerWheel() {
+        timerWheel.clear();
+    }
+
+    /**
+     * Picks the single wakeup for the earliest pending snooze. When a regular reminder is already
+     * due within maxLatenessMillis after it, the snooze shares that wakeup and needs no alarm of
+     * its own (returns 0). Returns -1 when nothing is snoozed.
+     */
+    public static long computeSnoozeWakeup(List<ReminderSnapshot.Entry> snoozes, List<ReminderSnapshot.Entry> reminders,
+                                           long maxLatenessMillis) {
+        long earliest = Long.MAX_VALUE;
+        for (ReminderSnapshot.Entry entry : snoozes) {
+            earliest = Math.min(earliest, entry.nextTriggerAt);
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return -1;
+        }
+
+        if (reminders != null) {
+            for (ReminderSnapshot.Entry entry : reminders) {
+                if (entry.deliverAt >= earliest && entry.deliverAt <= earliest + maxLatenessMillis) {
+                    return 0;
+                }
+            }
+        }
+        return earliest;
+    }
+
+    // Keeps the one coalesced snooze alarm in line with the store and the reminder schedule
+    public static void updateAlarm(Context context) {
+        List<ReminderSnapshot.Entry> snoozes;
+        synchronized (lock) {
+            snoozes = load(context);
+        }
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(context, MedicineReminderReceiver.class).setAction(MedicineReminderReceiver.ACTION_SNOOZED);
+        long maxLatenessMillis = ReminderSettings.getMaxLatenessMillis(context);
+        boolean exact = ReminderScheduler.canScheduleExactAlarms(context);
+
+        // Doses the wheel will deliver only need a fallback in case the process dies first
+        List<ReminderSnapshot.Entry> alarmed = new ArrayList<>(snoozes.size());
+        long wheelEarliest = Long.MAX_VALUE;
+        for (ReminderSnapshot.Entry entry : snoozes) {
+            if (timerWheel.isPending(entry.getRequestCode())) {
+                wheelEarliest = Math.min(wheelEarliest, entry.nextTriggerAt);
+            } else {
+                alarmed.add(entry);
+            }
+        }
+
+        // Regular reminders only fire on their own trigger in exact mode; in inexact mode the
+        // system batches overlapping windows by itself
+        long wakeup = computeSnoozeWakeup(alarmed, exact ? ReminderSnapshot.load(context) : null, maxLatenessMillis);
+        if (wheelEarliest != Long.MAX_VALUE && (wakeup <= 0 || wheelEarliest < wakeup)) {
+            // Once the wheel delivers, collectDue moves the alarm on to the next alarmed snooze
+            long window = wakeup > 0 ? Math.min(maxLatenessMillis, wakeup - wheelEarliest) : maxLatenessMillis;
+            PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+            alarmManager.setWindow(AlarmManager.RTC_WAKEUP, wheelEarliest, window, pendingIntent);
+            Log.d(TAG, "Snooze fallback alarm set for " + wheelEarliest);
+            return;
+        }
+        if (wakeup <= 0) {
+            PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE);
+            if (pendingIntent != null) {
+                alarmManager.cancel(pendingIntent);
+                pendingIntent.cancel();
+            }
+            return;
+        }
+
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        if (exact) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, wakeup, pendingIntent);
+        } else {
+            alarmManager.setWindow(AlarmManager.RTC_WAKEUP, wakeup, maxLatenessMillis, pendingIntent);
+        }
+        Log.d(TAG, "Snooze alarm set for " + wakeup);
+    }
+
+    private static List<ReminderSnapshot.Entry> load(Context context) {
+        List<ReminderSnapshot.Entry> snoozes = ReminderSnapshot.read(context, FILE_NAME);
+        return snoozes != null ? snoozes : new ArrayList<>();
+    }
+
+    private static boolean removeDose(List<ReminderSnapshot.Entry> snoozes, long medicineId, int timeIndex) {
+        Iterator<ReminderSnapshot.Entry> iterator = snoozes.iterator();
+        while (iterator.hasNext()) {
+            ReminderSnapshot.Entry entry = iterator.next();
+            if (entry.medicineId == medicineId && entry.timeIndex == timeIndex) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+package com.medicare.app.utils;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel for short in-process delays. One slot per tick, a single daemon thread that
+ * only ticks while timers are pending, and a hard cap on how many timers can be pending at once.
+ * Timers die with the process, so callers must keep a persistent fallback.
+ */
+public class TimerWheel {
+
+    private static final String TAG = "TimerWheel";
+
+    private static class Timer {
+        final long key;
+        final long deadlineTick;
+        final Runnable task;
+
+        Timer(long key, long deadlineTick, Runnable task) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<List<Timer>> slots;
+    private final int maxPending;
+    private final Map<Long, Timer> pending = new HashMap<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TimerWheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ScheduledFuture<?> tickTask;
+    private long currentTick;
+
+    public TimerWheel(long tickMillis, int slotCount, int maxPending) {
+        this.tickMillis = tickMillis;
+        this.maxPending = maxPending;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    public long getHorizonMillis() {
+        return tickMillis * (slots.size() - 1);
+    }
+
+    /**
+     * Runs task on the wheel thread after delayMillis, replacing any timer with the same key.
+     * Returns false when the delay is beyond the wheel's horizon or the wheel is full.
+     */
+    public synchronized boolean schedule(long key, long delayMillis, Runnable task) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        if (ticks >= slots.size()) {
+            return false;
+        }
+
+        remove(key);
+        if (pending.size() >= maxPending) {
+            return false;
+        }
+
+        Timer timer = new Timer(key, currentTick + ticks, task);
+        slots.get(slotOf(timer.deadlineTick)).add(timer);
+        pending.put(key, timer);
+        if (tickTask == null) {
+            tickTask = ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    public synchronized void cancel(long key) {
+        remove(key);
+        stopIfIdle();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized boolean isPending(long key) {
+        return pending.containsKey(key);
+    }
+
+    // Drops every pending timer without running it, as process death would
+    public synchronized void clear() {
+        for (List<Timer> slot : slots) {
+            slot.clear();
+        }
+        pending.clear();
+        stopIfIdle();
+    }
+
+    private void remove(long key) {
+        Timer timer = pending.remove(key);
+        if (timer != null) {
+            slots.get(slotOf(timer.deadlineTick)).remove(timer);
+        }
+    }
+
+    private void tick() {
+        List<Runnable> due = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            Iterator<Timer> iterator = slots.get(slotOf(currentTick)).iterator();
+            while (iterator.hasNext()) {
+                Timer timer = iterator.next();
+                if (timer.deadlineTick <= currentTick) {
+                    iterator.remove();
+                    pending.remove(timer.key);
+                    due.add(timer.task);
+                }
+            }
+            stopIfIdle();
+        }
+
+        for (Runnable task : due) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Timer task failed", e);
+            }
+        }
+    }
+
+    private void stopIfIdle() {
+        if (pending.isEmpty() && tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+    }
+
+    private int slotOf(long tick) {
+        return (int) (tick % slots.size());
+    }
+}
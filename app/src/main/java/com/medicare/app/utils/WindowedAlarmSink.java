@@ -0,0 +1,25 @@
+package com.medicare.app.utils;
+
+import android.content.Context;
+
+// Used when exact alarms are not permitted. Individual reminders get no alarm of their own;
+// ReminderScheduler arms one shared window alarm covering every due reminder instead.
+public class WindowedAlarmSink implements AlarmSink {
+
+    private final AlarmManagerSink exactSink;
+
+    public WindowedAlarmSink(Context context) {
+        this.exactSink = new AlarmManagerSink(context);
+    }
+
+    @Override
+    public void setAlarm(ReminderSnapshot.Entry entry, long triggerAt) {
+        // Any exact alarm left from before the permission was lost is replaced by the shared window
+        exactSink.cancelAlarm(entry.getRequestCode());
+    }
+
+    @Override
+    public void cancelAlarm(int requestCode) {
+        exactSink.cancelAlarm(requestCode);
+    }
+}
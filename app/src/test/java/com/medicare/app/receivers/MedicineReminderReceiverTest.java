@@ -0,0 +1,106 @@
+package com.medicare.app.receivers;
+
+import android.app.Application;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+
+import com.medicare.app.utils.AlarmSink;
+import com.medicare.app.utils.LatenessHistogram;
+import com.medicare.app.utils.ReminderClock;
+import com.medicare.app.utils.ReminderNotifier;
+import com.medicare.app.utils.ReminderScheduler;
+import com.medicare.app.utils.ReminderSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class MedicineReminderReceiverTest {
+
+    private static final long LATENESS_MILLIS = 5 * 60000;
+
+    private Application context;
+    private long now;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        // Far from the real date, so a receiver reading the system clock would record days of lateness
+        now = ZonedDateTime.of(2031, 1, 15, 12, 0, 0, 0, TimeZone.getDefault().toZoneId()).toInstant().toEpochMilli();
+        ReminderScheduler.setClock(new ReminderClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+
+            @Override
+            public TimeZone getTimeZone() {
+                return TimeZone.getDefault();
+            }
+        });
+        ReminderScheduler.setAlarmSink(new AlarmSink() {
+            @Override
+            public void setAlarm(ReminderSnapshot.Entry entry, long triggerAt) {
+            }
+
+            @Override
+            public void cancelAlarm(int requestCode) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        drainNotifier();
+        ReminderScheduler.setClock(null);
+        ReminderScheduler.setAlarmSink(null);
+        ((NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE)).cancelAll();
+    }
+
+    @Test
+    public void latenessIsMeasuredOnTheSchedulerClock() throws InterruptedException {
+        ReminderSnapshot.Entry entry = new ReminderSnapshot.Entry();
+        entry.medicineId = 1;
+        entry.userId = 1;
+        entry.minuteOfDay = 11 * 60 + 55;
+        entry.medicineName = "Medicine 1";
+        entry.dosage = "1 tablet";
+        entry.nextTriggerAt = now - LATENESS_MILLIS;
+        entry.deliverAt = now - LATENESS_MILLIS;
+        ReminderSnapshot.save(context, Collections.singletonList(entry));
+
+        new MedicineReminderReceiver().onReceive(context, new Intent(context, MedicineReminderReceiver.class)
+                .setAction(MedicineReminderReceiver.ACTION_DELIVER_DUE));
+        drainNotifier();
+
+        List<LatenessHistogram.DaySummary> summaries = LatenessHistogram.getDailySummaries(context);
+        assertEquals(1, summaries.size());
+        assertEquals(20310115, summaries.get(0).day);
+        assertEquals(1, summaries.get(0).count);
+        // Reported as the bound of the 2-5 minute bucket
+        assertEquals(LATENESS_MILLIS, summaries.get(0).p99Millis);
+    }
+
+    private static void drainNotifier() throws InterruptedException {
+        CountDownLatch drained = new CountDownLatch(1);
+        ReminderNotifier.runInBackground(() -> ReminderNotifier.runInBackground(drained::countDown));
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,131 @@
+package com.medicare.app.receivers;
+
+import android.app.Application;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+
+import com.medicare.app.utils.AlarmSink;
+import com.medicare.app.utils.ReceiverTrace;
+import com.medicare.app.utils.ReminderNotifier;
+import com.medicare.app.utils.ReminderScheduler;
+import com.medicare.app.utils.ReminderSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times a batched reminder wakeup from the broadcast to the posted notifications: onReceive on
+ * the main thread against ReceiverTrace.ON_RECEIVE_BUDGET_MILLIS, and the work handed to the
+ * notifier thread against ReceiverTrace.ASYNC_BUDGET_MILLIS.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class ReminderDeliveryLatencyTest {
+
+    private static final int DOSES_PER_WAKEUP = 20;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 40;
+    // Of the ROUNDS, how many onReceive calls may run over budget: one GC pause or scheduler hiccup
+    private static final int ON_RECEIVE_OUTLIERS = 2;
+
+    private Application context;
+    private NotificationManager notificationManager;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        // Nothing has to reach AlarmManager for delivery to be measured
+        ReminderScheduler.setAlarmSink(new AlarmSink() {
+            @Override
+            public void setAlarm(ReminderSnapshot.Entry entry, long triggerAt) {
+            }
+
+            @Override
+            public void cancelAlarm(int requestCode) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        drainNotifier();
+        ReminderScheduler.setAlarmSink(null);
+        notificationManager.cancelAll();
+    }
+
+    @Test
+    public void batchedWakeupStaysWithinReceiverBudgets() throws InterruptedException {
+        long[] onReceiveMicros = new long[ROUNDS];
+        long[] deliveryMicros = new long[ROUNDS];
+        for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+            notificationManager.cancelAll();
+            ReminderSnapshot.save(context, dueEntries(System.currentTimeMillis()));
+            Intent intent = new Intent(context, MedicineReminderReceiver.class)
+                    .setAction(MedicineReminderReceiver.ACTION_DELIVER_DUE);
+
+            long start = System.nanoTime();
+            new MedicineReminderReceiver().onReceive(context, intent);
+            long received = System.nanoTime();
+            drainNotifier();
+            long delivered = System.nanoTime();
+
+            // Every dose plus the group summary
+            assertEquals(DOSES_PER_WAKEUP + 1, notificationManager.getActiveNotifications().length);
+            if (round >= 0) {
+                onReceiveMicros[round] = (received - start) / 1000;
+                deliveryMicros[round] = (delivered - start) / 1000;
+            }
+        }
+
+        Arrays.sort(onReceiveMicros);
+        Arrays.sort(deliveryMicros);
+        String report = String.format(Locale.US,
+                "%d doses per wakeup: onReceive p50 %.2f ms, p95 %.2f ms, max %.2f ms; delivered p50 %.2f ms, max %.2f ms",
+                DOSES_PER_WAKEUP, onReceiveMicros[ROUNDS / 2] / 1000.0, onReceiveMicros[ROUNDS - 1 - ON_RECEIVE_OUTLIERS] / 1000.0,
+                onReceiveMicros[ROUNDS - 1] / 1000.0, deliveryMicros[ROUNDS / 2] / 1000.0, deliveryMicros[ROUNDS - 1] / 1000.0);
+
+        // p95: every onReceive but the slowest two stays within budget
+        assertTrue(report, onReceiveMicros[ROUNDS - 1 - ON_RECEIVE_OUTLIERS] <= ReceiverTrace.ON_RECEIVE_BUDGET_MILLIS * 1000);
+        assertTrue(report, deliveryMicros[ROUNDS - 1] <= ReceiverTrace.ASYNC_BUDGET_MILLIS * 1000);
+    }
+
+    private static List<ReminderSnapshot.Entry> dueEntries(long now) {
+        List<ReminderSnapshot.Entry> entries = new ArrayList<>(DOSES_PER_WAKEUP);
+        for (int i = 0; i < DOSES_PER_WAKEUP; i++) {
+            ReminderSnapshot.Entry entry = new ReminderSnapshot.Entry();
+            entry.medicineId = i + 1;
+            entry.userId = 1;
+            entry.minuteOfDay = 8 * 60;
+            entry.medicineName = "Medicine " + (i + 1);
+            entry.dosage = "1 tablet";
+            entry.nextTriggerAt = now - 1000;
+            entry.deliverAt = now - 1000;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    // The receiver's task queues the posting behind itself, so wait for a task queued after that
+    private static void drainNotifier() throws InterruptedException {
+        CountDownLatch drained = new CountDownLatch(1);
+        ReminderNotifier.runInBackground(() -> ReminderNotifier.runInBackground(drained::countDown));
+        assertTrue(drained.await(ReceiverTrace.ASYNC_BUDGET_MILLIS * 5, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,117 @@
+package com.medicare.app.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DrugNameTrieTest {
+
+    private static final long UNCAPPED = Long.MAX_VALUE / 2;
+
+    @Test
+    public void insertSplitsEdgesWhereNamesDiverge() {
+        DrugNameTrie trie = new DrugNameTrie(UNCAPPED);
+        // "metformin" is one edge until "metoprolol" splits it after "met", then "methadone" after "meth"
+        trie.add("Metformin");
+        trie.add("Metoprolol");
+        trie.add("Methadone");
+        trie.add("Met");
+
+        assertEquals(4, trie.size());
+        assertEquals(Arrays.asList("Met", "Metformin", "Methadone", "Metoprolol"), trie.suggest("me", 10));
+        assertEquals(Collections.singletonList("Metformin"), trie.suggest("metf", 10));
+        assertEquals(Collections.singletonList("Methadone"), trie.suggest("METH", 10));
+        assertEquals(Arrays.asList("Met", "Metformin"), trie.suggest("met", 2));
+    }
+
+    @Test
+    public void prefixLookupsEndingInsideOrAcrossSplitEdges() {
+        DrugNameTrie trie = new DrugNameTrie(UNCAPPED);
+        for (String name : Arrays.asList("Amlodipine", "Amoxicillin", "Amoxicillin Clavulanate", "Aspirin")) {
+            trie.add(name);
+        }
+
+        // Ends inside the "am" edge, exactly on the "amo" split, and inside the leaf edge past it
+        assertEquals(Arrays.asList("Amlodipine", "Amoxicillin", "Amoxicillin Clavulanate"), trie.suggest("a", 3));
+        assertEquals(Arrays.asList("Amoxicillin", "Amoxicillin Clavulanate"), trie.suggest("amo", 10));
+        assertEquals(Arrays.asList("Amoxicillin", "Amoxicillin Clavulanate"), trie.suggest("amoxic", 10));
+        assertEquals(Collections.singletonList("Amoxicillin Clavulanate"), trie.suggest("amoxicillin c", 10));
+        // Diverges in the middle of an edge, runs past a leaf, or starts with an unknown letter
+        assertEquals(Collections.emptyList(), trie.suggest("amx", 10));
+        assertEquals(Collections.emptyList(), trie.suggest("aspirins", 10));
+        assertEquals(Collections.emptyList(), trie.suggest("b", 10));
+    }
+
+    @Test
+    public void duplicatesAreStoredOnceWithTheFirstSpelling() {
+        DrugNameTrie trie = new DrugNameTrie(UNCAPPED);
+        assertTrue(trie.add("Ibuprofen"));
+        long bytes = trie.getEstimatedBytes();
+
+        assertTrue(trie.add("IBUPROFEN"));
+        assertTrue(trie.add("  ibuprofen "));
+        assertEquals(1, trie.size());
+        assertEquals(bytes, trie.getEstimatedBytes());
+        assertEquals(Collections.singletonList("Ibuprofen"), trie.suggest("IBU", 10));
+    }
+
+    @Test
+    public void keysFoldCaseButNamesKeepTheirSpelling() {
+        DrugNameTrie trie = new DrugNameTrie(UNCAPPED);
+        trie.add("CoQ10");
+        trie.add("co-trimoxazole");
+
+        assertEquals(Arrays.asList("co-trimoxazole", "CoQ10"), trie.suggest("CO", 10));
+        assertEquals(Collections.singletonList("CoQ10"), trie.suggest("coq", 10));
+    }
+
+    @Test
+    public void emptyNamesAndPrefixesAreRejected() {
+        DrugNameTrie trie = new DrugNameTrie(UNCAPPED);
+        assertFalse(trie.add(null));
+        assertFalse(trie.add("   "));
+        trie.add("Aspirin");
+
+        assertEquals(Collections.emptyList(), trie.suggest("", 10));
+        assertEquals(Collections.emptyList(), trie.suggest(null, 10));
+        assertEquals(Collections.emptyList(), trie.suggest("a", 0));
+    }
+
+    @Test
+    public void stopsAtTheMemoryCapAndStaysUsable() {
+        long cap = 64 * 1024;
+        DrugNameTrie trie = new DrugNameTrie(cap);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            String name = "Drug " + i;
+            if (!trie.add(name)) {
+                break;
+            }
+            added.add(name);
+        }
+
+        assertEquals(added.size(), trie.size());
+        assertTrue(trie.getEstimatedBytes() <= cap);
+        // Nothing more fits, however short, and what is in stays searchable
+        assertFalse(trie.add("Zz"));
+        assertEquals(added.size(), trie.size());
+        assertEquals(Collections.singletonList("Drug 1"), trie.suggest("drug 1", 1));
+
+        // The same cap holds far fewer long names
+        DrugNameTrie longNames = new DrugNameTrie(cap);
+        String suffix = new String(new char[200]).replace('\0', 'x');
+        int count = 0;
+        while (longNames.add("Drug " + count + " " + suffix)) {
+            count++;
+        }
+        assertTrue(longNames.getEstimatedBytes() <= cap);
+        assertTrue(count < added.size() / 4);
+    }
+}
@@ -0,0 +1,75 @@
+package com.medicare.app.services;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FieldCapReaderTest {
+
+    // One character as it appears in the JSON text; escapes decode to a single character
+    private static final String[] TOKENS = {"a", "b", " ", "é", "\\\"", "\\\\", "\\n", "\\u00e9", "\\/", "{", "]", ":"};
+
+    @Test
+    public void capsStringValuesAndKeepsEverythingElse() throws IOException {
+        String json = "{\"name\":\"Aspirin\",\"warnings\":[\"abcdefghij\",\"ab\\\"cd\\u00e9fgh\"],\"count\":12345678901,\"ok\":true}";
+        assertEquals("{\"name\":\"Aspir\",\"warnings\":[\"abcde\",\"ab\\\"cd\"],\"count\":12345678901,\"ok\":true}",
+                readAll(new FieldCapReader(new StringReader(json), 5), 64));
+    }
+
+    @Test
+    public void randomStringsAreCutAtWholeCharacters() throws IOException {
+        Random random = new Random(41);
+        for (int i = 0; i < 2000; i++) {
+            int cap = 1 + random.nextInt(20);
+            List<String> tokens = new ArrayList<>();
+            int size = random.nextInt(40);
+            for (int t = 0; t < size; t++) {
+                tokens.add(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+
+            String all = String.join("", tokens);
+            String kept = String.join("", tokens.subList(0, Math.min(cap, tokens.size())));
+            // Keys stay whole, values are cut
+            String input = "{\"" + all + "\":[\"" + all + "\",{\"" + all + "\":\"" + all + "\"}],\"b\":\"" + all + "\"}";
+            String expected = "{\"" + all + "\":[\"" + kept + "\",{\"" + all + "\":\"" + kept + "\"}],\"b\":\"" + kept + "\"}";
+            // Small reads put escapes across buffer boundaries
+            Reader source = new OneCharReader(new StringReader(input));
+            assertEquals(input + " capped at " + cap, expected, readAll(new FieldCapReader(source, cap), 1 + random.nextInt(8)));
+        }
+    }
+
+    private static String readAll(Reader reader, int chunk) throws IOException {
+        StringBuilder out = new StringBuilder();
+        char[] buffer = new char[chunk];
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) >= 0) {
+            out.append(buffer, 0, read);
+        }
+        return out.toString();
+    }
+
+    private static class OneCharReader extends Reader {
+        private final Reader in;
+
+        OneCharReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int count) throws IOException {
+            return count == 0 ? 0 : in.read(buffer, offset, 1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.medicare.app.services;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InteractionCheckerTest {
+
+    // One frame at 60 Hz; check() runs off the main thread, but its result gates closing the screen
+    private static final long FRAME_BUDGET_MILLIS = 16;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    private static final String[] INGREDIENTS = {
+            "ibuprofen", "naproxen", "aspirin", "acetaminophen", "warfarin", "metformin", "lisinopril",
+            "atorvastatin", "simvastatin", "amlodipine", "metoprolol", "omeprazole", "sertraline",
+            "fluoxetine", "citalopram", "gabapentin", "levothyroxine", "losartan", "hydrochlorothiazide",
+            "furosemide", "prednisone", "amoxicillin", "clopidogrel", "tramadol", "montelukast",
+            "pantoprazole", "escitalopram", "rosuvastatin", "bupropion", "trazodone", "digoxin",
+            "allopurinol", "carvedilol", "spironolactone"};
+
+    @Test
+    public void sharedActiveIngredientIsOneDuplicate() {
+        List<InteractionChecker.Warning> warnings = InteractionChecker.check(
+                Arrays.asList("Advil", "Motrin IB"),
+                Arrays.asList(label("Advil", "Ibuprofen 200 mg", "Stomach bleeding warning: ibuprofen is an NSAID."),
+                        label("Motrin IB", "Ibuprofen USP, 200 mg (NSAID)", "Do not use with other ibuprofen products.")));
+
+        assertEquals(1, warnings.size());
+        InteractionChecker.Warning warning = warnings.get(0);
+        assertEquals(InteractionChecker.Kind.DUPLICATE, warning.kind);
+        assertEquals("Advil", warning.medicine);
+        assertEquals("Motrin IB", warning.otherMedicine);
+        assertEquals("ibuprofen", warning.ingredient);
+    }
+
+    @Test
+    public void saltSuffixesDoNotHideADuplicate() {
+        List<InteractionChecker.Warning> warnings = InteractionChecker.check(
+                Arrays.asList("Aleve", "Naproxen"),
+                Arrays.asList(label("Aleve", "Naproxen sodium 220 mg", ""), null));
+
+        assertEquals(1, warnings.size());
+        assertEquals(InteractionChecker.Kind.DUPLICATE, warnings.get(0).kind);
+        assertEquals("naproxen", warnings.get(0).ingredient);
+    }
+
+    @Test
+    public void medicineIsNotFlaggedAgainstItsOwnLabel() {
+        MedicineInfoService.MedicineInfo ibuprofen = label("Ibuprofen", "Ibuprofen 200 mg",
+                "Allergy alert: ibuprofen may cause a severe allergic reaction. Stomach bleeding warning: "
+                        + "this product contains an NSAID (ibuprofen).");
+
+        assertEquals(Collections.emptyList(), InteractionChecker.check(
+                Collections.singletonList("Ibuprofen"), Collections.singletonList(ibuprofen)));
+        assertEquals(Collections.emptyList(), InteractionChecker.check(
+                Arrays.asList("Ibuprofen", "Vitamin D3"),
+                Arrays.asList(ibuprofen, label("Vitamin D3", "Cholecalciferol 1000 IU", "Store below 25C."))));
+    }
+
+    @Test
+    public void labelNamingTheOtherIngredientIsAnInteractionEitherWay() {
+        MedicineInfoService.MedicineInfo warfarin = label("Warfarin", "Warfarin sodium 5 mg",
+                "Bleeding risk is increased by aspirin and other NSAIDs.");
+        MedicineInfoService.MedicineInfo aspirin = label("Aspirin", "Aspirin 81 mg", "Ask a doctor before use if you take a blood thinner.");
+
+        List<InteractionChecker.Warning> added = InteractionChecker.check(
+                Arrays.asList("Warfarin", "Aspirin"), Arrays.asList(warfarin, aspirin));
+        assertEquals(1, added.size());
+        assertEquals(InteractionChecker.Kind.INTERACTION, added.get(0).kind);
+        assertEquals("Warfarin", added.get(0).medicine);
+        assertEquals("Aspirin", added.get(0).otherMedicine);
+        assertEquals("aspirin", added.get(0).ingredient);
+
+        // Added second, the warfarin label still warns about it
+        List<InteractionChecker.Warning> existing = InteractionChecker.check(
+                Arrays.asList("Aspirin", "Warfarin"), Arrays.asList(aspirin, warfarin));
+        assertEquals(1, existing.size());
+        assertEquals("Warfarin", existing.get(0).medicine);
+        assertEquals("Aspirin", existing.get(0).otherMedicine);
+    }
+
+    @Test
+    public void thirtyFourMedicinesWithFullLabelsAreCheckedWithinAFrame() throws Exception {
+        MedicineInfoService.MedicineInfo template = new LabelParser()
+                .parseFirstResult(new StringReader(OpenFdaStubServer.fixture("ibuprofen")));
+        List<String> names = new ArrayList<>();
+        List<MedicineInfoService.MedicineInfo> labels = new ArrayList<>();
+        for (int i = 0; i < INGREDIENTS.length; i++) {
+            String ingredient = INGREDIENTS[i];
+            String name = Character.toUpperCase(ingredient.charAt(0)) + ingredient.substring(1) + " Tablets";
+            // Each label also warns about two other medicines, as real ones do
+            String mentions = " Ask a doctor before use if you are taking " + INGREDIENTS[(i + 5) % INGREDIENTS.length]
+                    + " or " + INGREDIENTS[(i + 11) % INGREDIENTS.length] + ". ";
+            names.add(name);
+            labels.add(label(name, "Active ingredient (in each tablet) " + ingredient + " USP, 20 mg",
+                    fill(template.warnings + mentions), fill(template.dosageAndAdministration + mentions)));
+        }
+
+        long best = Long.MAX_VALUE;
+        int warnings = 0;
+        for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            warnings = InteractionChecker.check(names, labels).size();
+            if (round >= 0) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+
+        String report = String.format(Locale.US, "%d medicines, %d warnings, best %.2f ms",
+                names.size(), warnings, best / 1e6);
+        assertTrue(report, warnings > 0);
+        assertTrue(report, best < FRAME_BUDGET_MILLIS * 1000000);
+    }
+
+    // Label text repeated up to the parser's field cap, the longest a stored label gets
+    private static String fill(String text) {
+        StringBuilder filled = new StringBuilder(LabelParser.DEFAULT_MAX_FIELD_LENGTH);
+        while (filled.length() < LabelParser.DEFAULT_MAX_FIELD_LENGTH) {
+            filled.append(text).append(' ');
+        }
+        filled.setLength(LabelParser.DEFAULT_MAX_FIELD_LENGTH);
+        return filled.toString();
+    }
+
+    private static MedicineInfoService.MedicineInfo label(String drugName, String activeIngredient, String warnings) {
+        return label(drugName, activeIngredient, warnings, "");
+    }
+
+    private static MedicineInfoService.MedicineInfo label(String drugName, String activeIngredient, String warnings,
+            String contraindications) {
+        MedicineInfoService.MedicineInfo info = new MedicineInfoService.MedicineInfo();
+        info.drugName = drugName;
+        info.activeIngredient = activeIngredient;
+        info.warnings = warnings;
+        info.contraindications = contraindications;
+        return info;
+    }
+}
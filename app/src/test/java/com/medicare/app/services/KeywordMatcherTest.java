@@ -0,0 +1,66 @@
+package com.medicare.app.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void reportsOverlappingKeywordsInOrderOfEnd() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("naproxen sodium", "naproxen", "sodium"));
+
+        assertEquals(Arrays.asList("1:0-8", "0:0-15", "2:9-15"), find(matcher, "naproxen sodium"));
+    }
+
+    @Test
+    public void keywordEndingInsideALongerOneIsFoundThroughTheFailureLinks() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("she", "he", "hers"));
+
+        // "he" ends inside "she" and "hers" but is only a word on its own
+        assertEquals(Arrays.asList("0:0-3", "2:4-8", "1:9-11"), find(matcher, "she hers he"));
+        assertEquals(Collections.emptyList(), find(matcher, "ushers"));
+    }
+
+    @Test
+    public void onlyWholeWordsMatch() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("aspirin", "codeine"));
+
+        assertEquals(Collections.emptyList(), find(matcher, "aspirins and dihydrocodeine2"));
+        assertEquals(Collections.emptyList(), find(matcher, "aspirinée"));
+        assertEquals(Arrays.asList("0:1-8", "1:10-17"), find(matcher, "(aspirin, codeine)"));
+    }
+
+    @Test
+    public void matchingIgnoresCase() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("IBUPROFEN", "warfarin"));
+
+        assertEquals(Arrays.asList("0:9-18", "1:23-31", "0:33-42"),
+                find(matcher, "Contains Ibuprofen and WARFARIN; ibuprofen"));
+    }
+
+    @Test
+    public void repeatedKeywordIsReportedUnderItsFirstIndex() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("aspirin", "Aspirin", "ASPIRIN"));
+
+        assertEquals(Collections.singletonList("0:0-7"), find(matcher, "aspirin"));
+    }
+
+    @Test
+    public void nonAsciiAndEmptyKeywordsAreIgnored() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("", "café", "tea"));
+
+        assertEquals(Collections.singletonList("2:9-12"), find(matcher, "café and tea"));
+    }
+
+    private static List<String> find(KeywordMatcher matcher, String text) {
+        List<String> matches = new ArrayList<>();
+        matcher.findWords(text, (keyword, start, end) -> matches.add(keyword + ":" + start + "-" + end));
+        return matches;
+    }
+}
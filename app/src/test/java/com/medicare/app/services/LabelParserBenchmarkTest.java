@@ -0,0 +1,122 @@
+package com.medicare.app.services;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Parses a synthetic openFDA response with very large label sections, streaming through
+ * LabelParser and as a Gson DOM, and compares time and bytes allocated for each. The streaming
+ * parse must keep every field within the cap and allocate less than the DOM. Skipped on JVMs
+ * that cannot count per-thread allocation.
+ */
+public class LabelParserBenchmarkTest {
+
+    private static final int LABELS = 20;
+    private static final int SECTION_CHARS = 256 * 1024;
+    private static final int ROUNDS = 5;
+
+    private interface Parse {
+        int run() throws Exception;
+    }
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("No per-thread allocation counter on this JVM", bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue("Per-thread allocation counting unsupported", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void streamingParseCapsFieldsAndAllocatesLessThanADom() throws Exception {
+        String json = buildResponse();
+        LabelParser parser = new LabelParser();
+        int cap = LabelParser.DEFAULT_MAX_FIELD_LENGTH;
+
+        Parse streaming = () -> parser.forEachResult(new StringReader(json), (info, names) -> {
+            assertEquals(cap, info.warnings.length());
+            assertEquals(cap, info.adverseReactions.length());
+            assertTrue(info.drugName.length() <= cap);
+            for (String name : names) {
+                assertTrue(name.length() <= cap);
+            }
+        });
+        Parse dom = () -> {
+            JsonArray results = JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("results");
+            for (int i = 0; i < results.size(); i++) {
+                JsonObject label = results.get(i).getAsJsonObject();
+                label.getAsJsonArray("warnings").get(0).getAsString().substring(0, cap);
+                label.getAsJsonArray("adverse_reactions").get(0).getAsString().substring(0, cap);
+            }
+            return results.size();
+        };
+
+        long[] streamed = measure(streaming);
+        long[] built = measure(dom);
+        double megabytes = json.length() * 2 / (1024.0 * 1024);
+        String report = String.format(Locale.US,
+                "%.1f MB response: streaming %.1f ms, %.1f MB allocated; DOM %.1f ms, %.1f MB allocated",
+                megabytes, streamed[0] / 1e6, streamed[1] / (1024.0 * 1024), built[0] / 1e6, built[1] / (1024.0 * 1024));
+
+        assertTrue(report, streamed[1] < built[1]);
+    }
+
+    // Best time in nanoseconds and the bytes allocated by that round
+    private long[] measure(Parse parse) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long[] best = {Long.MAX_VALUE, 0};
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            assertEquals(LABELS, parse.run());
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            // The first round warms up
+            if (round > 0 && elapsed < best[0]) {
+                best[0] = elapsed;
+                best[1] = allocated;
+            }
+        }
+        return best;
+    }
+
+    private static String buildResponse() {
+        StringBuilder section = new StringBuilder(SECTION_CHARS);
+        while (section.length() < SECTION_CHARS) {
+            section.append("Do not use with other \\\"NSAID\\\" products.\\n Stop use and ask a doctor \\u2014 ");
+        }
+        String text = section.toString();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"meta\":{\"results\":{\"skip\":0,\"limit\":").append(LABELS).append("}},\"results\":[");
+        for (int i = 0; i < LABELS; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"openfda\":{\"brand_name\":[\"Brand ").append(i)
+                    .append("\"],\"generic_name\":[\"GENERIC ").append(i)
+                    .append("\"],\"manufacturer_name\":[\"Maker\"]},")
+                    .append("\"spl_unclassified_section\":[\"").append(text).append("\"],")
+                    .append("\"warnings\":[\"").append(text).append("\"],")
+                    .append("\"adverse_reactions\":[\"").append(text).append("\"],")
+                    .append("\"purpose\":[\"Pain reliever\"]}");
+        }
+        return json.append("]}").toString();
+    }
+}
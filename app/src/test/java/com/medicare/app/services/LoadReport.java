@@ -0,0 +1,60 @@
+package com.medicare.app.services;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latencies of the requests in one load run, and the throughput and percentiles they add up
+ * to. record() may be called from any thread.
+ */
+class LoadReport {
+
+    private final String name;
+    private final long[] latencyNanos;
+    private int count;
+    private long startNanos;
+    private long endNanos;
+
+    LoadReport(String name, int requests) {
+        this.name = name;
+        this.latencyNanos = new long[requests];
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    synchronized void record(long nanos) {
+        latencyNanos[count++] = nanos;
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    double getThroughputPerSecond() {
+        return getCount() / ((endNanos - startNanos) / 1e9);
+    }
+
+    // Nearest-rank percentile, percentile in (0, 100]
+    synchronized long getPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencyNanos, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.max(0, rank - 1)] / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: %d requests in %d ms, %.1f req/s, p50 %d ms, p99 %d ms, max %d ms",
+                name, getCount(), (endNanos - startNanos) / 1000000, getThroughputPerSecond(),
+                getPercentileMillis(50), getPercentileMillis(99), getPercentileMillis(100));
+    }
+}
@@ -0,0 +1,221 @@
+package com.medicare.app.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MedicineInfoService pointed at the stub server: fixtures parsed and cached, server errors
+ * retried, truncated bodies rejected, slow bodies and slow queries tolerated, and a load run
+ * of concurrent lookups checked against a p99 bound. Each case gets its own service, so pools and
+ * circuit start fresh; the label cache is still shared, so every case looks up names no other
+ * case uses.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class MedicineInfoServiceStubTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+    // Generous: the stub adds at most 30 ms per request
+    private static final long MAX_P99_MILLIS = 2000;
+    private static final AtomicInteger names = new AtomicInteger();
+
+    private static final String LABEL = OpenFdaStubServer.fixture("ibuprofen");
+    // Results are read through the returned Lookup instead
+    private static final MedicineInfoService.MedicineInfoCallback IGNORE = new MedicineInfoService.MedicineInfoCallback() {
+        @Override
+        public void onSuccess(MedicineInfoService.MedicineInfo medicineInfo) {
+        }
+
+        @Override
+        public void onError(String error) {
+        }
+    };
+
+    private OpenFdaStubServer server;
+    private MedicineInfoService service;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new OpenFdaStubServer(request -> OpenFdaStubServer.Reply.ok(LABEL).gzip());
+        service = new MedicineInfoService(RuntimeEnvironment.getApplication());
+        service.setBaseUrl(server.url("/drug/label.json"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void fixtureIsParsedAndServedFromMemoryAfterwards() throws Exception {
+        String name = uniqueName();
+        MedicineInfoService.MedicineInfo info = lookUp(name);
+        assertTrue(info.warnings.contains("Stomach bleeding warning"));
+        assertEquals("Strides Pharma Science Limited", info.manufacturer);
+
+        int requests = server.getRequestCount();
+        assertSame(info, lookUp(name));
+        assertEquals(requests, server.getRequestCount());
+    }
+
+    @Test
+    public void memoryHitCallsBackAfterReturningOnAnotherThread() throws Exception {
+        String name = uniqueName();
+        lookUp(name);
+
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> calledBackOn = new AtomicReference<>();
+        CountDownLatch calledBack = new CountDownLatch(1);
+        MedicineInfoService.Lookup lookup = service.getMedicineInfo(name, new MedicineInfoService.MedicineInfoCallback() {
+            @Override
+            public void onSuccess(MedicineInfoService.MedicineInfo medicineInfo) {
+                calledBackOn.set(Thread.currentThread());
+                calledBack.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+            }
+        });
+
+        assertTrue(calledBack.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotSame(caller, calledBackOn.get());
+        assertTrue(lookup.isDone());
+    }
+
+    @Test
+    public void serverErrorsAreRetried() throws Exception {
+        AtomicInteger seen = new AtomicInteger();
+        server.setHandler(request -> seen.getAndIncrement() < 2
+                ? OpenFdaStubServer.Reply.status(503)
+                : OpenFdaStubServer.Reply.ok(LABEL).gzip());
+
+        MedicineInfoService.MedicineInfo info = lookUp(uniqueName());
+        assertTrue(info.warnings.contains("Stomach bleeding warning"));
+        // Either query may have drawn the 503s, so only their lower bound is fixed
+        UpstreamHealth health = service.getUpstreamHealth();
+        assertTrue(health.toString(), health.getFailureCount() >= 2);
+        assertTrue(health.toString(), health.getSuccessCount() >= 1);
+        assertTrue(server.getRequestCount() >= 3);
+    }
+
+    @Test
+    public void truncatedBodyIsNeitherParsedNorCached() throws Exception {
+        server.setHandler(request -> OpenFdaStubServer.Reply.ok(LABEL).truncateAfter(LABEL.length() / 2));
+        String name = uniqueName();
+        try {
+            lookUp(name);
+            fail("Truncated label was accepted");
+        } catch (ExecutionException expected) {
+            // Every attempt of both queries failed
+        }
+
+        String key = MedicineInfoCache.normalizeKey(name);
+        assertNull(service.getCache().getFromMemory(key));
+        assertNull(service.getCache().getFromDisk(key, true));
+    }
+
+    @Test
+    public void slowDripBodyWithinTheReadTimeoutSucceeds() throws Exception {
+        // Keep it to the brand query, so the slow body is the one that answers
+        service.setHedgeDelayMillis(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        server.setHandler(request -> OpenFdaStubServer.Reply.ok(LABEL).gzip().drip(32, 5));
+
+        MedicineInfoService.MedicineInfo info = lookUp(uniqueName());
+        assertTrue(info.warnings.contains("Stomach bleeding warning"));
+        // The slow body was read to the end, not abandoned and retried
+        assertEquals(0, service.getUpstreamHealth().getFailureCount());
+        assertTrue(server.getPaths().get(0).contains("openfda.brand_name"));
+    }
+
+    @Test
+    public void slowBrandQueryIsOvertakenByTheHedge() throws Exception {
+        service.setHedgeDelayMillis(100);
+        server.setHandler(request -> request.path.contains("openfda.brand_name")
+                ? OpenFdaStubServer.Reply.ok(LABEL).gzip().latency(3000)
+                : OpenFdaStubServer.Reply.ok(LABEL).gzip());
+
+        long start = System.nanoTime();
+        lookUp(uniqueName());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 2000);
+
+        boolean genericSent = false;
+        for (String path : server.getPaths()) {
+            genericSent |= path.contains("openfda.generic_name");
+        }
+        assertTrue(genericSent);
+    }
+
+    @Test
+    public void concurrentLookupsReportThroughputAndP99() throws Exception {
+        int callers = 8;
+        int lookups = 200;
+        AtomicInteger served = new AtomicInteger();
+        server.setHandler(request -> OpenFdaStubServer.Reply.ok(LABEL).gzip()
+                .latency(10 + (served.getAndIncrement() * 7) % 20));
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        LoadReport report = new LoadReport("MedicineInfoService lookups", lookups);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> running = new ArrayList<>();
+        report.start();
+        for (int c = 0; c < callers; c++) {
+            running.add(pool.submit(() -> {
+                while (next.getAndIncrement() < lookups) {
+                    long start = System.nanoTime();
+                    try {
+                        lookUp(uniqueName());
+                    } catch (ExecutionException e) {
+                        failed.incrementAndGet();
+                    }
+                    report.record(System.nanoTime() - start);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> caller : running) {
+            caller.get(120, TimeUnit.SECONDS);
+        }
+        report.finish();
+        pool.shutdown();
+
+        String summary = report + ", " + service.getUpstreamHealth();
+        assertEquals(summary, 0, failed.get());
+        assertEquals(summary, lookups, report.getCount());
+        assertTrue(summary, report.getPercentileMillis(99) < MAX_P99_MILLIS);
+    }
+
+    private MedicineInfoService.MedicineInfo lookUp(String name) throws Exception {
+        return service.getMedicineInfo(name, IGNORE).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static String uniqueName() {
+        return "stubdrug" + names.incrementAndGet() + "x" + System.nanoTime();
+    }
+}
@@ -0,0 +1,130 @@
+package com.medicare.app.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives OpenFdaClient with concurrent GETs against the stub server, with latency, server errors,
+ * slow-drip and truncated bodies injected per request, and checks p99; throughput and percentiles
+ * are in the assertion messages. Request n
+ * always gets the same treatment, so runs are comparable.
+ */
+public class OpenFdaClientLoadTest {
+
+    private static final int CALLERS = 8;
+    private static final int REQUESTS = 400;
+    // Generous: the stub adds at most 25 ms, slow-drip bodies about 50 ms more
+    private static final long MAX_P99_MILLIS = 1000;
+
+    private static final String LABEL = OpenFdaStubServer.fixture("ibuprofen");
+
+    private OpenFdaStubServer server;
+    private final OpenFdaClient client = new OpenFdaClient();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new OpenFdaStubServer(request -> reply(requestNumber(request.path), false));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void concurrentLookupsWithLatencyErrorsAndSlowBodies() throws Exception {
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger serverErrors = new AtomicInteger();
+        LoadReport report = run("latency+errors+drip", ok, serverErrors, new AtomicInteger());
+
+        assertEquals(report.toString(), REQUESTS, report.getCount());
+        assertEquals(report.toString(), REQUESTS / 20, serverErrors.get());
+        assertEquals(report.toString(), REQUESTS - serverErrors.get(), ok.get());
+        assertTrue(report.toString(), report.getPercentileMillis(99) < MAX_P99_MILLIS);
+    }
+
+    @Test
+    public void truncatedBodiesFailOnlyTheirOwnRequest() throws Exception {
+        server.setHandler(request -> reply(requestNumber(request.path), true));
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        LoadReport report = run("latency+errors+drip+truncation", ok, new AtomicInteger(), failed);
+
+        // Every tenth body is cut off; a dropped connection must not take pooled neighbours with it
+        assertEquals(report.toString(), REQUESTS / 10, failed.get());
+        assertEquals(report.toString(), REQUESTS - REQUESTS / 20 - failed.get(), ok.get());
+    }
+
+    // Request n: 5..24 ms of latency, every 20th a 503, every 10th (offset 3) dripped, every 10th (offset 7) truncated
+    private static OpenFdaStubServer.Reply reply(int n, boolean truncate) {
+        if (n % 20 == 0) {
+            return OpenFdaStubServer.Reply.status(503).latency(5);
+        }
+        OpenFdaStubServer.Reply reply = OpenFdaStubServer.Reply.ok(LABEL).gzip().latency(5 + (n * 7) % 20);
+        if (n % 10 == 3) {
+            reply.drip(64, 2);
+        }
+        if (truncate && n % 10 == 7) {
+            reply.truncateAfter(200);
+        }
+        return reply;
+    }
+
+    private static int requestNumber(String path) {
+        return Integer.parseInt(path.substring(path.lastIndexOf('=') + 1));
+    }
+
+    private LoadReport run(String name, AtomicInteger ok, AtomicInteger serverErrors, AtomicInteger failed)
+            throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        LoadReport report = new LoadReport(name, REQUESTS);
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> running = new ArrayList<>();
+        report.start();
+        for (int c = 0; c < CALLERS; c++) {
+            running.add(callers.submit(() -> {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = next.getAndIncrement()) < REQUESTS) {
+                    String url = server.url("/drug/label.json?search=openfda.brand_name:ibuprofen&limit=1&n=" + n);
+                    long start = System.nanoTime();
+                    try (OpenFdaClient.Response response = client.get(url, null, new OpenFdaClient.Call())) {
+                        if (response.code == 200) {
+                            InputStream body = response.getBody();
+                            while (body.read(buffer) != -1) {
+                                // Read it all, as the parser would
+                            }
+                            ok.incrementAndGet();
+                        } else {
+                            serverErrors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                    }
+                    report.record(System.nanoTime() - start);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> caller : running) {
+            caller.get(60, TimeUnit.SECONDS);
+        }
+        report.finish();
+        callers.shutdown();
+        return report;
+    }
+}
@@ -0,0 +1,118 @@
+package com.medicare.app.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OpenFdaClientTest {
+
+    private static final String LABEL = "{\"results\":[{\"openfda\":{\"generic_name\":[\"IBUPROFEN\"]},"
+            + "\"warnings\":[\"Stomach bleeding warning\"]}]}";
+    private static final String ETAG = "\"label-v1\"";
+
+    private OpenFdaStubServer server;
+    private final OpenFdaClient client = new OpenFdaClient();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new OpenFdaStubServer(request -> ETAG.equals(request.header("If-None-Match"))
+                ? OpenFdaStubServer.Reply.status(304).etag(ETAG)
+                : OpenFdaStubServer.Reply.ok(LABEL).etag(ETAG));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void matchingEtagComesBackNotModified() throws IOException {
+        String url = server.url("/drug/label.json?search=ibuprofen");
+        String etag;
+        try (OpenFdaClient.Response first = client.get(url, null, new OpenFdaClient.Call())) {
+            assertEquals(200, first.code);
+            assertEquals(LABEL, readFully(first.getBody()));
+            etag = first.etag;
+        }
+        assertEquals(ETAG, etag);
+
+        MedicineInfoCache.Validators validators = new MedicineInfoCache.Validators(url, etag, null);
+        try (OpenFdaClient.Response second = client.get(url, validators, new OpenFdaClient.Call())) {
+            assertTrue(second.isNotModified());
+            assertNull(second.getBody());
+        }
+
+        // Validators saved for another URL must not make the request conditional
+        MedicineInfoCache.Validators other = new MedicineInfoCache.Validators(url + "&limit=2", etag, null);
+        try (OpenFdaClient.Response third = client.get(url, other, new OpenFdaClient.Call())) {
+            assertEquals(200, third.code);
+            assertEquals(LABEL, readFully(third.getBody()));
+        }
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void gzipBodyIsDecoded() throws IOException {
+        AtomicReference<String> acceptEncoding = new AtomicReference<>();
+        server.setHandler(request -> {
+            acceptEncoding.set(request.header("Accept-Encoding"));
+            return OpenFdaStubServer.Reply.ok(LABEL).gzip();
+        });
+        try (OpenFdaClient.Response response = client.get(server.url("/drug/label.json"), null,
+                new OpenFdaClient.Call())) {
+            assertEquals(200, response.code);
+            assertEquals(LABEL, readFully(response.getBody()));
+        }
+        assertEquals("gzip", acceptEncoding.get());
+    }
+
+    @Test
+    public void truncatedBodyFailsInsteadOfEndingEarly() throws IOException {
+        server.setHandler(request -> OpenFdaStubServer.Reply.ok(LABEL).truncateAfter(LABEL.length() / 2));
+        assertReadFails();
+
+        server.setHandler(request -> OpenFdaStubServer.Reply.ok(LABEL).gzip().truncateAfter(20));
+        assertReadFails();
+
+        // The dropped connection must not poison the next request
+        server.setHandler(request -> OpenFdaStubServer.Reply.ok(LABEL));
+        try (OpenFdaClient.Response response = client.get(server.url("/drug/label.json"), null,
+                new OpenFdaClient.Call())) {
+            assertEquals(LABEL, readFully(response.getBody()));
+        }
+    }
+
+    private void assertReadFails() throws IOException {
+        OpenFdaClient.Response response = client.get(server.url("/drug/label.json"), null,
+                new OpenFdaClient.Call());
+        try {
+            readFully(response.getBody());
+            fail("Truncated body was read as complete");
+        } catch (IOException expected) {
+            // Either the length check or the gzip trailer catches it
+        } finally {
+            response.close();
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
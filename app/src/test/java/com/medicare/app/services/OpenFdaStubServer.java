@@ -0,0 +1,299 @@
+package com.medicare.app.services;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP/1.1 server standing in for api.fda.gov, serving recorded label fixtures from
+ * src/test/resources/openfda. Written on a plain socket rather than the JDK HttpServer so a reply
+ * can misbehave the way a real upstream does: arrive late, fail, trickle its body out in small
+ * pieces, or stop before its Content-Length and drop the connection. Keep-alive is supported so
+ * pooled connections are exercised the same way as in the app.
+ */
+class OpenFdaStubServer implements Closeable {
+
+    interface Handler {
+        Reply handle(Request request);
+    }
+
+    static class Request {
+        final String path;
+        // Header names lowercased
+        final Map<String, String> headers;
+
+        Request(String path, Map<String, String> headers) {
+            this.path = path;
+            this.headers = headers;
+        }
+
+        String header(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+    }
+
+    static class Reply {
+        final int code;
+        final String body;
+        String etag;
+        boolean gzip;
+        // Bytes of the encoded body sent before the connection is dropped, -1 to send it all
+        int truncateAfter = -1;
+        // Wait before the status line
+        long latencyMillis;
+        // Body written dripBytes at a time with a pause after each, 0 to write it at once
+        int dripBytes;
+        long dripPauseMillis;
+
+        Reply(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        static Reply ok(String body) {
+            return new Reply(200, body);
+        }
+
+        static Reply status(int code) {
+            return new Reply(code, "");
+        }
+
+        Reply etag(String etag) {
+            this.etag = etag;
+            return this;
+        }
+
+        Reply gzip() {
+            this.gzip = true;
+            return this;
+        }
+
+        Reply truncateAfter(int bytes) {
+            this.truncateAfter = bytes;
+            return this;
+        }
+
+        Reply latency(long millis) {
+            this.latencyMillis = millis;
+            return this;
+        }
+
+        Reply drip(int bytes, long pauseMillis) {
+            this.dripBytes = bytes;
+            this.dripPauseMillis = pauseMillis;
+            return this;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final Queue<String> paths = new ConcurrentLinkedQueue<>();
+    private volatile Handler handler;
+    private volatile boolean closed;
+
+    OpenFdaStubServer(Handler handler) throws IOException {
+        this.handler = handler;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(this::acceptLoop, "OpenFdaStubServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String pathAndQuery) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + pathAndQuery;
+    }
+
+    void setHandler(Handler handler) {
+        this.handler = handler;
+    }
+
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    // Path and query of every request so far, in arrival order
+    List<String> getPaths() {
+        return new ArrayList<>(paths);
+    }
+
+    // Body of src/test/resources/openfda/<name>.json
+    static String fixture(String name) {
+        try (InputStream in = OpenFdaStubServer.class.getResourceAsStream("/openfda/" + name + ".json")) {
+            if (in == null) {
+                throw new IllegalArgumentException("No fixture named " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            // Head and body go out as separate writes; Nagle would hold the body for a delayed ACK
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            Request request;
+            while ((request = readRequest(in)) != null) {
+                requestCount.incrementAndGet();
+                paths.add(request.path);
+                if (!writeReply(out, handler.handle(request))) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    // Null at end of stream between requests
+    private static Request readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return null;
+        }
+        String[] parts = requestLine.split(" ");
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                        line.substring(colon + 1).trim());
+            }
+        }
+        return new Request(parts.length > 1 ? parts[1] : "/", headers);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return c == -1 && line.length() == 0 ? null : line.toString();
+    }
+
+    // False when the connection must be dropped after this reply
+    private static boolean writeReply(OutputStream out, Reply reply) throws IOException {
+        pause(reply.latencyMillis);
+        byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+        if (reply.gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+        }
+        boolean hasBody = reply.code != 304 && reply.code != 204;
+
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(reply.code).append(' ').append(reasonPhrase(reply.code)).append("\r\n");
+        if (reply.etag != null) {
+            head.append("ETag: ").append(reply.etag).append("\r\n");
+        }
+        if (hasBody) {
+            head.append("Content-Type: application/json\r\n");
+            if (reply.gzip) {
+                head.append("Content-Encoding: gzip\r\n");
+            }
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        if (!hasBody) {
+            out.flush();
+            return true;
+        }
+
+        boolean truncated = reply.truncateAfter >= 0 && reply.truncateAfter < body.length;
+        int length = truncated ? reply.truncateAfter : body.length;
+        int step = reply.dripBytes > 0 ? reply.dripBytes : length;
+        for (int offset = 0; offset < length; offset += step) {
+            out.write(body, offset, Math.min(step, length - offset));
+            out.flush();
+            if (reply.dripBytes > 0) {
+                pause(reply.dripPauseMillis);
+            }
+        }
+        out.flush();
+        return !truncated;
+    }
+
+    private static void pause(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Stub server closed");
+        }
+    }
+
+    private static String reasonPhrase(int code) {
+        switch (code) {
+            case 200:
+                return "OK";
+            case 304:
+                return "Not Modified";
+            case 404:
+                return "Not Found";
+            case 429:
+                return "Too Many Requests";
+            case 500:
+                return "Internal Server Error";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Status";
+        }
+    }
+}
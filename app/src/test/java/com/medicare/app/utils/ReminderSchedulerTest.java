@@ -0,0 +1,284 @@
+package com.medicare.app.utils;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Property tests for trigger computation across DST transitions and timezone changes, checked
+ * against java.time as an independent oracle. The random cases are seeded so failures reproduce.
+ */
+public class ReminderSchedulerTest {
+
+    private static final String[] ZONES = {
+            "America/New_York", "Europe/London", "Europe/Berlin", "Australia/Sydney",
+            "Australia/Lord_Howe", "America/Santiago", "Pacific/Auckland", "Asia/Kolkata"
+    };
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final int CASES_PER_ANCHOR = 400;
+
+    @Test
+    public void nextTriggerIsTheFirstWallClockOccurrenceAfterNow() {
+        Random random = new Random(27);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            for (long anchor : anchors(zone)) {
+                for (int i = 0; i < CASES_PER_ANCHOR; i++) {
+                    int minuteOfDay = random.nextInt(24 * 60);
+                    long now = anchor + (long) ((random.nextDouble() * 2 - 1) * 36 * HOUR);
+                    long trigger = ReminderScheduler.computeNextTrigger(minuteOfDay, now, zone);
+                    String message = id + " " + Instant.ofEpochMilli(now) + " at minute " + minuteOfDay;
+
+                    assertTrue(message, trigger > now);
+                    boolean found = false;
+                    for (List<Long> day : occurrences(minuteOfDay, now, zone)) {
+                        for (long occurrence : day) {
+                            found |= occurrence == trigger;
+                            // Only the first instant of a wall time repeated by a fall-back may be passed
+                            // over, and then for the second instant of the same day
+                            if (occurrence > now && occurrence < trigger) {
+                                assertTrue(message + " skipped " + Instant.ofEpochMilli(occurrence),
+                                        day.size() == 2 && day.get(1) == trigger);
+                            }
+                        }
+                    }
+                    assertTrue(message + " gave " + Instant.ofEpochMilli(trigger), found);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void consecutiveTriggersFallOnConsecutiveDays() {
+        Random random = new Random(28);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            ZoneId zoneId = ZoneId.of(id);
+            for (long anchor : anchors(zone)) {
+                for (int i = 0; i < CASES_PER_ANCHOR / 10; i++) {
+                    int minuteOfDay = random.nextInt(24 * 60);
+                    long trigger = ReminderScheduler.computeNextTrigger(minuteOfDay, anchor - 5 * DAY, zone);
+                    // Ten days across the transition: exactly one fire per calendar day, none doubled or lost
+                    for (int day = 0; day < 10; day++) {
+                        long next = ReminderScheduler.computeNextTrigger(minuteOfDay, trigger, zone);
+                        assertEquals(id + " at minute " + minuteOfDay + " after " + Instant.ofEpochMilli(trigger),
+                                localDate(trigger, zoneId).plusDays(1), localDate(next, zoneId));
+                        trigger = next;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reanchorMovesPendingTriggersToTheNewZone() {
+        Random random = new Random(29);
+        for (String fromId : ZONES) {
+            for (String toId : ZONES) {
+                TimeZone from = TimeZone.getTimeZone(fromId);
+                TimeZone to = TimeZone.getTimeZone(toId);
+                for (long anchor : anchors(to)) {
+                    ReminderSnapshot.Entry entry = newEntry(random.nextInt(24 * 60));
+                    long now = anchor + (long) ((random.nextDouble() * 2 - 1) * 36 * HOUR);
+                    entry.nextTriggerAt = ReminderScheduler.computeNextTrigger(entry.minuteOfDay, now - HOUR, from);
+                    entry.deliverAt = entry.nextTriggerAt;
+                    if (entry.nextTriggerAt <= now) {
+                        continue;
+                    }
+
+                    assertTrue(ReminderScheduler.reanchor(entry, now, to));
+                    assertEquals(fromId + " to " + toId + " at " + Instant.ofEpochMilli(now),
+                            ReminderScheduler.computeNextTrigger(entry.minuteOfDay, now, to), entry.nextTriggerAt);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reanchorKeepsDosesHeldByQuietHours() {
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            for (long anchor : anchors(zone)) {
+                // A 23:00 dose held until 07:00, restored or rescheduled at 01:00
+                ReminderSnapshot.Entry entry = newEntry(23 * 60);
+                long now = atLocalTime(anchor, 1, 0, zone);
+                entry.nextTriggerAt = ReminderScheduler.computeNextTrigger(entry.minuteOfDay, now - DAY, zone);
+                entry.deliverAt = ReminderScheduler.computeNextTrigger(7 * 60, now, zone);
+                long heldTrigger = entry.nextTriggerAt;
+                assertTrue(heldTrigger <= now);
+
+                assertTrue(ReminderScheduler.reanchor(entry, now, zone));
+                assertEquals(id, heldTrigger, entry.nextTriggerAt);
+
+                // The same dose already delivered is moved on to its next occurrence
+                entry.deliverAt = heldTrigger;
+                assertTrue(ReminderScheduler.reanchor(entry, now, zone));
+                assertTrue(id, entry.nextTriggerAt > now);
+            }
+        }
+    }
+
+    @Test
+    public void courseWindowHoldsAcrossTransitions() {
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            for (long anchor : anchors(zone)) {
+                ReminderSnapshot.Entry entry = newEntry(2 * 60 + 30);
+                entry.startDate = anchor - 3 * DAY;
+                entry.endDate = anchor + 3 * DAY;
+                ZoneId zoneId = zone.toZoneId();
+                long days = localDate(entry.endDate, zoneId).toEpochDay()
+                        - localDate(entry.startDate, zoneId).toEpochDay() + 1;
+
+                // One fire on each local date of the course, from the start date through the end date
+                int fires = 0;
+                long trigger = ReminderScheduler.computeNextTrigger(entry, anchor - 10 * DAY, zone);
+                while (trigger >= 0) {
+                    assertEquals(id, localDate(entry.startDate, zoneId).plusDays(fires), localDate(trigger, zoneId));
+                    fires++;
+                    trigger = ReminderScheduler.computeNextTrigger(entry, trigger, zone);
+                    assertTrue(id, fires <= days);
+                }
+                assertEquals(id + " around " + Instant.ofEpochMilli(anchor), days, fires);
+                assertFalse(ReminderScheduler.reanchor(entry, entry.endDate + 2 * DAY, zone));
+            }
+        }
+    }
+
+    @Test
+    public void doseBatchedForwardIsDeliveredOnce() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/Berlin");
+        ReminderPolicy.Lookup lookup = userId -> new ReminderPolicy(15 * MINUTE, -1, -1);
+        RecordingSink sink = new RecordingSink();
+        long day = ZonedDateTime.of(2025, 3, 29, 0, 0, 0, 0, zone.toZoneId()).toInstant().toEpochMilli();
+
+        // 08:00 and 08:10 share the 08:00 wakeup
+        ReminderSnapshot.Entry first = newEntry(8 * 60);
+        ReminderSnapshot.Entry second = newEntry(8 * 60 + 10);
+        second.timeIndex = 1;
+        List<ReminderSnapshot.Entry> entries = new ArrayList<>(Arrays.asList(first, second));
+        for (ReminderSnapshot.Entry entry : entries) {
+            assertTrue(ReminderScheduler.advance(entry, day, zone));
+        }
+        ReminderScheduler.armWakeups(sink, entries, lookup, zone, false);
+        assertEquals(first.deliverAt, second.deliverAt);
+        assertEquals(1, sink.alarms.size());
+
+        // Across the DST change on the second night, each dose still arrives once a day
+        for (int i = 0; i < 3; i++) {
+            long wakeup = sink.next();
+            List<ReminderSnapshot.Entry> due = ReminderScheduler.collectDue(entries, sink, lookup, wakeup, zone);
+            assertEquals(2, due.size());
+            long secondTrigger = due.get(1).nextTriggerAt;
+            assertTrue(wakeup < secondTrigger);
+
+            assertTrue(ReminderScheduler.collectDue(entries, sink, lookup, secondTrigger, zone).isEmpty());
+            assertTrue(second.nextTriggerAt > secondTrigger);
+            assertEquals(localDate(secondTrigger, zone.toZoneId()).plusDays(1), localDate(second.nextTriggerAt, zone.toZoneId()));
+
+            // Nor does a clock or timezone change between the wakeup and the trigger bring it back
+            ReminderSnapshot.Entry restored = second.copy();
+            assertTrue(ReminderScheduler.reanchor(restored, wakeup + 5 * MINUTE, zone));
+            assertEquals(second.nextTriggerAt, restored.nextTriggerAt);
+        }
+    }
+
+    private static class RecordingSink implements AlarmSink {
+        final Map<Integer, Long> alarms = new HashMap<>();
+
+        @Override
+        public void setAlarm(ReminderSnapshot.Entry entry, long triggerAt) {
+            alarms.put(entry.getRequestCode(), triggerAt);
+        }
+
+        @Override
+        public void cancelAlarm(int requestCode) {
+            alarms.remove(requestCode);
+        }
+
+        long next() {
+            long next = Long.MAX_VALUE;
+            for (long triggerAt : alarms.values()) {
+                next = Math.min(next, triggerAt);
+            }
+            return next;
+        }
+    }
+
+    private static ReminderSnapshot.Entry newEntry(int minuteOfDay) {
+        ReminderSnapshot.Entry entry = new ReminderSnapshot.Entry();
+        entry.medicineId = 1;
+        entry.userId = 1;
+        entry.minuteOfDay = minuteOfDay;
+        entry.medicineName = "Medicine";
+        return entry;
+    }
+
+    // Every offset change in 2025 and 2026, plus a fixed instant for zones without DST
+    private static List<Long> anchors(TimeZone zone) {
+        List<Long> anchors = new ArrayList<>();
+        anchors.add(ZonedDateTime.of(2025, 7, 1, 12, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli());
+        long start = ZonedDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+        for (long t = start; t < start + 2 * 365 * DAY; t += HOUR) {
+            if (zone.getOffset(t) != zone.getOffset(t + HOUR)) {
+                anchors.add(t + HOUR);
+            }
+        }
+        return anchors;
+    }
+
+    // Instants showing minuteOfDay on the wall clock, per local date around now: one normally, two
+    // when a fall-back repeats it, and the shifted instant when a spring-forward skips it
+    private static List<List<Long>> occurrences(int minuteOfDay, long now, TimeZone zone) {
+        ZoneId zoneId = zone.toZoneId();
+        List<List<Long>> days = new ArrayList<>();
+        LocalDate today = localDate(now, zoneId);
+        for (int offset = -1; offset <= 2; offset++) {
+            LocalDateTime wallTime = today.plusDays(offset).atTime(minuteOfDay / 60, minuteOfDay % 60);
+            List<Long> day = new ArrayList<>();
+            List<ZoneOffset> validOffsets = zoneId.getRules().getValidOffsets(wallTime);
+            if (validOffsets.isEmpty()) {
+                day.add(ZonedDateTime.of(wallTime, zoneId).toInstant().toEpochMilli());
+            }
+            for (ZoneOffset zoneOffset : validOffsets) {
+                day.add(wallTime.toInstant(zoneOffset).toEpochMilli());
+            }
+            day.sort(Long::compare);
+            days.add(day);
+        }
+        return days;
+    }
+
+    private static LocalDate localDate(long time, ZoneId zoneId) {
+        return Instant.ofEpochMilli(time).atZone(zoneId).toLocalDate();
+    }
+
+    private static long atLocalTime(long day, int hour, int minute, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(day);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+}
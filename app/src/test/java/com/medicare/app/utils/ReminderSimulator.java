@@ -0,0 +1,225 @@
+package com.medicare.app.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Replays reminder schedules against a virtual clock and a recording alarm sink, without
+ * AlarmManager or a device. Every wakeup runs the delivery path the receiver uses,
+ * ReminderScheduler.collectDue, so advancing, quiet hours, batching and wakeup sharing all go
+ * through the production code. Exact mode wakes at each armed alarm; inexact mode wakes at the
+ * close of the shared window from ReminderScheduler.computeSharedWakeupWindow, the latest the
+ * platform may deliver it.
+ */
+public class ReminderSimulator {
+
+    public static class Result {
+        public long simulatedMillis;
+        public int reminders;
+        public int fires;
+        public int wakeups;
+        public int pendingPeak;
+        public int missed;
+        public int duplicates;
+        // Thread CPU time spent in collectDue, so other load on the machine does not count
+        public long collectCpuNanos;
+        public long maxLatenessMillis;
+        public long cpuMillis;
+        public long wallMillis;
+
+        public double getCollectCpuMicrosPerWakeup() {
+            return wakeups == 0 ? 0 : collectCpuNanos / 1000.0 / wakeups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d reminders over %d days: %d fires, %d wakeups, pending peak %d, %d missed, %d duplicate, "
+                            + "max lateness %d s, %.2f us CPU per wakeup in collectDue, %d ms CPU, %d ms wall time",
+                    reminders, simulatedMillis / DAY_MILLIS, fires, wakeups, pendingPeak, missed, duplicates,
+                    maxLatenessMillis / 1000, getCollectCpuMicrosPerWakeup(), cpuMillis, wallMillis);
+        }
+    }
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static class PendingAlarm {
+        final int requestCode;
+        final long triggerAt;
+        final long generation;
+
+        PendingAlarm(int requestCode, long triggerAt, long generation) {
+            this.requestCode = requestCode;
+            this.triggerAt = triggerAt;
+            this.generation = generation;
+        }
+    }
+
+    // Mirrors AlarmManager semantics: setting an alarm for a request code replaces the previous one
+    private static class RecordingSink implements AlarmSink {
+        final PriorityQueue<PendingAlarm> queue = new PriorityQueue<>(64, (a, b) -> Long.compare(a.triggerAt, b.triggerAt));
+        final Map<Integer, Long> liveGenerations = new HashMap<>();
+        long nextGeneration;
+        int pendingPeak;
+
+        @Override
+        public void setAlarm(ReminderSnapshot.Entry entry, long triggerAt) {
+            long generation = nextGeneration++;
+            liveGenerations.put(entry.getRequestCode(), generation);
+            queue.add(new PendingAlarm(entry.getRequestCode(), triggerAt, generation));
+            pendingPeak = Math.max(pendingPeak, liveGenerations.size());
+        }
+
+        @Override
+        public void cancelAlarm(int requestCode) {
+            liveGenerations.remove(requestCode);
+        }
+
+        // Earliest live alarm, dropping the replaced and cancelled ones on the way
+        long peekTrigger() {
+            while (!queue.isEmpty()) {
+                PendingAlarm alarm = queue.peek();
+                Long live = liveGenerations.get(alarm.requestCode);
+                if (live != null && live == alarm.generation) {
+                    return alarm.triggerAt;
+                }
+                queue.poll();
+            }
+            return Long.MAX_VALUE;
+        }
+
+        // Fires every live alarm due by time, which removes it as AlarmManager does
+        void fireUntil(long time) {
+            while (peekTrigger() <= time) {
+                liveGenerations.remove(queue.poll().requestCode);
+            }
+        }
+    }
+
+    private final List<ReminderSnapshot.Entry> entries;
+    private final TimeZone zone;
+    private ReminderPolicy.Lookup policies = userId -> ReminderPolicy.NONE;
+    private long maxLatenessMillis;
+
+    public ReminderSimulator(List<ReminderSnapshot.Entry> entries, TimeZone zone) {
+        this.entries = entries;
+        this.zone = zone;
+    }
+
+    public void setPolicies(ReminderPolicy.Lookup policies) {
+        this.policies = policies;
+    }
+
+    // Simulates inexact mode with this lateness bound; 0, the default, simulates exact alarms
+    public void setMaxLatenessMillis(long maxLatenessMillis) {
+        this.maxLatenessMillis = maxLatenessMillis;
+    }
+
+    /**
+     * Runs from start for durationMillis, and then a further day so doses held by quiet hours past
+     * the end are still delivered. Occurrences whose trigger falls inside the duration count as
+     * missed unless delivered exactly once.
+     */
+    public Result run(long start, long durationMillis) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        long wallStart = System.nanoTime();
+        long end = start + durationMillis;
+        RecordingSink sink = new RecordingSink();
+        Result result = new Result();
+        result.simulatedMillis = durationMillis;
+        result.reminders = entries.size();
+
+        List<ReminderSnapshot.Entry> scheduled = new ArrayList<>(entries.size());
+        for (ReminderSnapshot.Entry entry : entries) {
+            ReminderSnapshot.Entry copy = entry.copy();
+            if (ReminderScheduler.advance(copy, start, zone)) {
+                scheduled.add(copy);
+            }
+        }
+        ReminderScheduler.armWakeups(sink, scheduled, policies, zone, true);
+
+        Map<Integer, Set<Long>> delivered = new HashMap<>();
+        while (true) {
+            long wakeup;
+            if (maxLatenessMillis > 0) {
+                long[] window = ReminderScheduler.computeSharedWakeupWindow(scheduled, maxLatenessMillis);
+                wakeup = window != null ? window[1] : Long.MAX_VALUE;
+            } else {
+                wakeup = sink.peekTrigger();
+            }
+            if (wakeup >= end + DAY_MILLIS) {
+                break;
+            }
+            sink.fireUntil(wakeup);
+            result.wakeups++;
+
+            long collectStart = threads.getCurrentThreadCpuTime();
+            List<ReminderSnapshot.Entry> due = ReminderScheduler.collectDue(scheduled, sink, policies, wakeup, zone);
+            result.collectCpuNanos += threads.getCurrentThreadCpuTime() - collectStart;
+
+            for (ReminderSnapshot.Entry dose : due) {
+                result.fires++;
+                result.maxLatenessMillis = Math.max(result.maxLatenessMillis, wakeup - dose.deliverAt);
+
+                // The copy still holds the occurrence it was due for
+                Set<Long> occurrences = delivered.get(dose.getRequestCode());
+                if (occurrences == null) {
+                    occurrences = new HashSet<>();
+                    delivered.put(dose.getRequestCode(), occurrences);
+                }
+                if (!occurrences.add(dose.nextTriggerAt)) {
+                    result.duplicates++;
+                }
+            }
+        }
+        result.pendingPeak = sink.pendingPeak;
+
+        // Every wall-clock occurrence inside the window and the course should have been delivered
+        for (ReminderSnapshot.Entry entry : entries) {
+            Set<Long> occurrences = delivered.get(entry.getRequestCode());
+            long expected = ReminderScheduler.computeNextTrigger(entry, start, zone);
+            while (expected >= 0 && expected < end) {
+                if (occurrences == null || !occurrences.contains(expected)) {
+                    result.missed++;
+                }
+                expected = ReminderScheduler.computeNextTrigger(entry, expected, zone);
+            }
+        }
+
+        result.cpuMillis = (threads.getCurrentThreadCpuTime() - cpuStart) / 1000000;
+        result.wallMillis = (System.nanoTime() - wallStart) / 1000000;
+        return result;
+    }
+
+    // Synthetic workload: users x medicinesPerUser medicines, each with timesPerMedicine doses spread over the day
+    public static List<ReminderSnapshot.Entry> generateEntries(int users, int medicinesPerUser, int timesPerMedicine) {
+        List<ReminderSnapshot.Entry> generated = new ArrayList<>();
+        long medicineId = 1;
+        for (int user = 1; user <= users; user++) {
+            for (int m = 0; m < medicinesPerUser; m++, medicineId++) {
+                for (int t = 0; t < timesPerMedicine; t++) {
+                    ReminderSnapshot.Entry entry = new ReminderSnapshot.Entry();
+                    entry.medicineId = medicineId;
+                    entry.userId = user;
+                    entry.timeIndex = t;
+                    // Start around 07:00 and spread doses evenly, with 5-minute offsets per medicine
+                    entry.minuteOfDay = (7 * 60 + t * (16 * 60 / timesPerMedicine) + (m % 12) * 5) % (24 * 60);
+                    entry.medicineName = "Medicine " + medicineId;
+                    entry.dosage = "1 tablet";
+                    generated.add(entry);
+                }
+            }
+        }
+        return generated;
+    }
+}
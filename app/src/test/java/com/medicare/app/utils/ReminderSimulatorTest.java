@@ -0,0 +1,78 @@
+package com.medicare.app.utils;
+
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a year of reminders for 50 users with 400 medicines through the production delivery
+ * path, across both DST changes, and checks every dose arrives exactly once. Each result, with
+ * its CPU time per wakeup, is in the assertion messages.
+ */
+public class ReminderSimulatorTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Berlin");
+    private static final long MINUTE = 60 * 1000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+    // Covers the March and October transitions
+    private static final long START = ZonedDateTime.of(2025, 3, 1, 0, 0, 0, 0, ZONE.toZoneId()).toInstant().toEpochMilli();
+    private static final long DURATION = 365 * DAY;
+    private static final int USERS = 50;
+    private static final int MEDICINES_PER_USER = 8;
+    private static final int TIMES_PER_MEDICINE = 3;
+
+    @Test
+    public void exactAlarmsDeliverEveryDoseOnTime() {
+        ReminderSimulator.Result result = new ReminderSimulator(ReminderSimulator.generateEntries(USERS, MEDICINES_PER_USER, TIMES_PER_MEDICINE), ZONE)
+                .run(START, DURATION);
+        String report = "Exact: " + result;
+
+        assertEquals(report, 0, result.missed);
+        assertEquals(report, 0, result.duplicates);
+        assertEquals(report, 0, result.maxLatenessMillis);
+        assertTrue(report, result.fires >= USERS * MEDICINES_PER_USER * TIMES_PER_MEDICINE * 365);
+    }
+
+    @Test
+    public void sharedWindowsStayWithinTheLatenessBound() {
+        ReminderSimulator simulator = new ReminderSimulator(ReminderSimulator.generateEntries(USERS, MEDICINES_PER_USER, TIMES_PER_MEDICINE), ZONE);
+        simulator.setMaxLatenessMillis(15 * MINUTE);
+        ReminderSimulator.Result result = simulator.run(START, DURATION);
+        String report = "Inexact: " + result;
+
+        assertEquals(report, 0, result.missed);
+        assertEquals(report, 0, result.duplicates);
+        assertTrue(report, result.maxLatenessMillis <= 15 * MINUTE);
+    }
+
+    @Test
+    public void batchingAndQuietHoursLoseAndRepeatNothing() {
+        List<ReminderSnapshot.Entry> entries = ReminderSimulator.generateEntries(USERS, MEDICINES_PER_USER, TIMES_PER_MEDICINE);
+        for (ReminderSnapshot.Entry entry : entries) {
+            // Late doses land in quiet hours, some of them critical, and some near the DST hour
+            if (entry.timeIndex == 2 && entry.medicineId % 3 == 0) {
+                entry.minuteOfDay = 23 * 60 + (int) (entry.medicineId % 6) * 5;
+            } else if (entry.timeIndex == 1 && entry.medicineId % 4 == 0) {
+                entry.minuteOfDay = 2 * 60 + 30;
+            }
+            entry.critical = entry.medicineId % 5 == 0;
+        }
+
+        ReminderSimulator simulator = new ReminderSimulator(entries, ZONE);
+        // Odd users batch within 10 minutes and keep quiet hours from 22:00 to 07:00
+        simulator.setPolicies(userId -> userId % 2 == 1
+                ? new ReminderPolicy(10 * MINUTE, 22 * 60, 7 * 60)
+                : new ReminderPolicy(30 * MINUTE, -1, -1));
+        ReminderSimulator.Result result = simulator.run(START, DURATION);
+        String report = "Batching and quiet hours: " + result;
+
+        assertEquals(report, 0, result.missed);
+        assertEquals(report, 0, result.duplicates);
+        assertTrue(report, result.wakeups < result.fires);
+    }
+}
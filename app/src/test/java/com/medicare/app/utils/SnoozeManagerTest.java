@@ -0,0 +1,178 @@
+package com.medicare.app.utils;
+
+import android.app.AlarmManager;
+import android.app.Application;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+import android.service.notification.StatusBarNotification;
+
+import com.medicare.app.receivers.MedicineReminderReceiver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowAlarmManager;
+
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * A short snooze is delivered in process by the timer wheel, with only an inexact alarm behind it;
+ * after process death the persisted snooze still fires from that alarm. Longer snoozes keep the
+ * exact alarm.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class SnoozeManagerTest {
+
+    private static final long SHORT_SNOOZE_MILLIS = 1500;
+    private static final long DELIVERY_TIMEOUT_MILLIS = 5000;
+
+    private Application context;
+    private NotificationManager notificationManager;
+    private ShadowAlarmManager alarms;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        alarms = shadowOf((AlarmManager) context.getSystemService(Context.ALARM_SERVICE));
+        ShadowAlarmManager.setCanScheduleExactAlarms(true);
+        // Regular reminders play no part here
+        ReminderScheduler.setAlarmSink(new AlarmSink() {
+            @Override
+            public void setAlarm(ReminderSnapshot.Entry entry, long triggerAt) {
+            }
+
+            @Override
+            public void cancelAlarm(int requestCode) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        SnoozeManager.clearTimerWheel();
+        drainNotifier();
+        ReminderScheduler.setClock(null);
+        ReminderScheduler.setAlarmSink(null);
+        notificationManager.cancelAll();
+    }
+
+    @Test
+    public void shortSnoozeIsDeliveredByTheWheel() throws InterruptedException {
+        ReminderSnapshot.Entry entry = dose(1);
+        SnoozeManager.snooze(context, entry, SHORT_SNOOZE_MILLIS);
+
+        ShadowAlarmManager.ScheduledAlarm fallback = snoozeAlarm();
+        assertNotNull(fallback);
+        assertNotEquals(ShadowAlarmManager.WINDOW_EXACT, fallback.getWindowLengthMs());
+
+        // No alarm is fired here: only the wheel can post it
+        assertTrue("Not delivered within " + DELIVERY_TIMEOUT_MILLIS + " ms", awaitPosted(entry));
+        assertNull(snoozeAlarm());
+    }
+
+    @Test
+    public void killedProcessStillFiresFromThePersistedSnooze() throws InterruptedException {
+        ReminderSnapshot.Entry entry = dose(2);
+        long until = SnoozeManager.snooze(context, entry, SHORT_SNOOZE_MILLIS);
+        SnoozeManager.clearTimerWheel();
+
+        ShadowAlarmManager.ScheduledAlarm fallback = snoozeAlarm();
+        assertNotNull(fallback);
+        assertEquals(until, fallback.getTriggerAtMs());
+
+        ReminderScheduler.setClock(clockAt(until + 1000));
+        new MedicineReminderReceiver().onReceive(context, new Intent(context, MedicineReminderReceiver.class)
+                .setAction(MedicineReminderReceiver.ACTION_SNOOZED));
+        drainNotifier();
+
+        assertEquals(1, posted(entry));
+        assertNull(snoozeAlarm());
+    }
+
+    @Test
+    public void longSnoozeKeepsTheExactAlarm() {
+        SnoozeManager.snooze(context, dose(3), SnoozeManager.SHORT_SNOOZE_MAX_MILLIS + 60000);
+
+        ShadowAlarmManager.ScheduledAlarm alarm = snoozeAlarm();
+        assertNotNull(alarm);
+        assertEquals(ShadowAlarmManager.WINDOW_EXACT, alarm.getWindowLengthMs());
+    }
+
+    private ShadowAlarmManager.ScheduledAlarm snoozeAlarm() {
+        for (ShadowAlarmManager.ScheduledAlarm alarm : alarms.getScheduledAlarms()) {
+            Intent intent = shadowOf(alarm.operation).getSavedIntent();
+            if (MedicineReminderReceiver.ACTION_SNOOZED.equals(intent.getAction())) {
+                return alarm;
+            }
+        }
+        return null;
+    }
+
+    private boolean awaitPosted(ReminderSnapshot.Entry entry) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (posted(entry) > 0) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    private int posted(ReminderSnapshot.Entry entry) {
+        int id = ReminderNotifier.getNotificationId(entry.medicineId, entry.timeIndex);
+        int count = 0;
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            if (notification.getId() == id) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static ReminderSnapshot.Entry dose(long medicineId) {
+        ReminderSnapshot.Entry entry = new ReminderSnapshot.Entry();
+        entry.medicineId = medicineId;
+        entry.userId = 1;
+        entry.minuteOfDay = 8 * 60;
+        entry.medicineName = "Medicine " + medicineId;
+        entry.dosage = "1 tablet";
+        return entry;
+    }
+
+    private static ReminderClock clockAt(long millis) {
+        return new ReminderClock() {
+            @Override
+            public long currentTimeMillis() {
+                return millis;
+            }
+
+            @Override
+            public TimeZone getTimeZone() {
+                return TimeZone.getDefault();
+            }
+        };
+    }
+
+    private static void drainNotifier() throws InterruptedException {
+        CountDownLatch drained = new CountDownLatch(1);
+        ReminderNotifier.runInBackground(() -> ReminderNotifier.runInBackground(drained::countDown));
+        assertTrue(drained.await(DELIVERY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+}